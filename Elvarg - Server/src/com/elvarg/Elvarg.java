@@ -1,20 +1,23 @@
 package com.elvarg;
 
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import com.elvarg.cache.CacheLoader;
+import com.elvarg.cache.impl.definitions.DefinitionPack;
 import com.elvarg.cache.impl.definitions.ItemDefinition;
 import com.elvarg.cache.impl.definitions.NpcDefinition;
 import com.elvarg.cache.impl.definitions.ObjectDefinition;
 import com.elvarg.cache.impl.definitions.ShopDefinition;
 import com.elvarg.cache.impl.definitions.WeaponInterfaces;
 import com.elvarg.engine.GameEngine;
+import com.elvarg.engine.Profiler;
+import com.elvarg.engine.StartupGraph;
 import com.elvarg.engine.task.impl.CombatPoisonEffect.CombatPoisonData;
 import com.elvarg.net.NetworkConstants;
+import com.elvarg.net.NetworkTransport;
 import com.elvarg.net.channel.ChannelPipelineHandler;
 import com.elvarg.util.ShutdownHook;
 import com.elvarg.world.collision.region.RegionClipping;
@@ -24,8 +27,6 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.util.ResourceLeakDetector;
 import io.netty.util.ResourceLeakDetector.Level;
 import jaggrab.Jaggrab;
@@ -65,62 +66,48 @@ public class Elvarg {
 		try {
 			logger.info("Initializing the game...");
 
-			final ExecutorService serviceLoader = Executors
-					.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("GameLoadingThread").build());
-
-			// Load the cache..
-			serviceLoader.execute(() -> {
-				try {
-					cacheLoader.init();
-
-					// JAGGRAB
-					if (GameConstants.JAGGRAB_ENABLED) {
-						new Jaggrab().init();
-					}
-
-				} catch (Exception e) {
-					e.printStackTrace();
-				}
-			});
-
-			// DEFINITIONS
-			logger.info("Loading definitions...");
-			serviceLoader.execute(() -> ItemDefinition.init());
-			serviceLoader.execute(() -> NpcDefinition.init());
-			serviceLoader.execute(() -> ObjectDefinition.init());
-			serviceLoader.execute(() -> RegionClipping.init());
-			serviceLoader.execute(() -> ObjectDefinition.parseObjects().load());
-			serviceLoader.execute(() -> ShopDefinition.parseShops().load());
-			serviceLoader.execute(() -> WeaponInterfaces.parseInterfaces().load());
-			serviceLoader.execute(() -> DialogueManager.parseDialogues().load());
-
-			// OTHERS
-			serviceLoader.execute(() -> ClanChatManager.init());
-			serviceLoader.execute(() -> CombatPoisonData.init());
-			
-			// Load deleted objects
-			serviceLoader.execute(() -> com.elvarg.world.entity.impl.object.DeletedObjectManager.load());
-
-			// Shutdown the loader
-			serviceLoader.shutdown();
-
-			// Make sure the loader is properly shut down
-			if (!serviceLoader.awaitTermination(15, TimeUnit.MINUTES))
-				throw new IllegalStateException("The background service load took too long!");
+			// Load the services, each as soon as the services it needs are loaded.
+			new StartupGraph()
+					// CACHE
+					.add("cache", () -> cacheLoader.init())
+					.add("jaggrab", () -> {
+						if (GameConstants.JAGGRAB_ENABLED) {
+							new Jaggrab().init();
+						}
+					}, "cache")
+
+					// DEFINITIONS
+					.add("definition pack", () -> DefinitionPack.init())
+					.add("item definitions", () -> ItemDefinition.init(), "definition pack")
+					.add("npc definitions", () -> NpcDefinition.init())
+					.add("object definitions", () -> ObjectDefinition.init(), "cache")
+					.add("region clipping", () -> RegionClipping.init(), "cache", "object definitions")
+					.add("world objects", () -> ObjectDefinition.parseObjects().load(), "definition pack",
+							"region clipping", "deleted objects")
+					.add("shops", () -> ShopDefinition.parseShops().load(), "definition pack", "item definitions")
+					.add("weapon interfaces", () -> WeaponInterfaces.parseInterfaces().load(), "definition pack")
+					.add("dialogues", () -> DialogueManager.parseDialogues().load(), "definition pack")
+
+					// OTHERS
+					.add("clans", () -> ClanChatManager.init())
+					.add("poison data", () -> CombatPoisonData.init())
+					.add("deleted objects", () -> com.elvarg.world.entity.impl.object.DeletedObjectManager.load())
+					.run(15, TimeUnit.MINUTES);
 
 			// Bind the port...
 			logger.info("Binding port " + NetworkConstants.GAME_PORT + "...");
 			ResourceLeakDetector.setLevel(Level.DISABLED);
-			EventLoopGroup loopGroup = new NioEventLoopGroup();
-			ServerBootstrap bootstrap = new ServerBootstrap();
-			bootstrap.group(loopGroup).channel(NioServerSocketChannel.class).childHandler(new ChannelPipelineHandler())
-					.bind(NetworkConstants.GAME_PORT).syncUninterruptibly();
+			EventLoopGroup loopGroup = NetworkTransport.newEventLoopGroup();
+			ServerBootstrap bootstrap = NetworkTransport.newBootstrap(loopGroup);
+			bootstrap.childHandler(new ChannelPipelineHandler()).bind(NetworkConstants.GAME_PORT)
+					.syncUninterruptibly();
 
 			// Start the game engine using a {@link ScheduledExecutorService}
 			logger.info("Starting game engine...");
 			final ScheduledExecutorService executor = Executors
 					.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("GameThread").build());
 			executor.scheduleAtFixedRate(engine, 0, GameConstants.ENGINE_PROCESSING_CYCLE_RATE, TimeUnit.MILLISECONDS);
+			Profiler.registerMBean();
 
 			logger.info("The loader has finished loading utility tasks.");
 			logger.info("Elvarg is now online on port " + NetworkConstants.GAME_PORT + "!");
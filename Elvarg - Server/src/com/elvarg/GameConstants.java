@@ -1,6 +1,7 @@
 package com.elvarg;
 
 import com.elvarg.cache.impl.CacheConstants;
+import com.elvarg.world.collision.region.MapLoading;
 import com.elvarg.world.model.Position;
 
 /**
@@ -60,6 +61,17 @@ public class GameConstants {
 			{ 5, 5608 }, { 6, -1 }, // Row 1
 
 			{ 7, 37128 }, { 8, 5065 }, { 9, 5715 }, { 10, 2449 }, { 11, 904 }, { 12, 147 }, { 13, 15200 } }; // Tab 13 = Display Options
+	/**
+	 * Should character files be written in the compact binary format instead
+	 * of JSON? Files in either format can always be loaded.
+	 */
+	public static final boolean BINARY_PLAYER_SAVES = false;
+
+	/**
+	 * How the collision map is loaded on startup.
+	 */
+	public static final MapLoading MAP_LOADING = MapLoading.LAZY;
+
 	public static final int[][] startKit = { { 4151, 1 }, { 4153, 1 }, { 1215, 1 }, { 9185, 1 },
 			{ 11235, 1 }, { 9244, 5000 }, { 11212, 1000 }, { 386, 500 }, { 2441, 100 }, { 2437, 100 }, { 2443, 100 },
 			{ 2445, 100 }, { 2435, 100 }, { 3041, 100 }, { 2431, 100 }, { 1163, 1 }, { 1127, 1 }, { 1079, 1 },
@@ -1,7 +1,6 @@
 package com.elvarg.cache;
 
 import static java.nio.file.StandardOpenOption.READ;
-import static java.nio.file.StandardOpenOption.WRITE;
 
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
@@ -9,7 +8,8 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -23,6 +23,7 @@ import com.elvarg.util.CompressionUtil;
 import com.google.common.base.Preconditions;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import jaggrab.net.FileDescriptor;
 
@@ -72,14 +73,13 @@ public class CacheLoader {
 		Preconditions.checkArgument(Files.exists(data), "No data file found in the specified path!");
 
 		// Load cache files...
-		SeekableByteChannel dataChannel = Files.newByteChannel(data, READ, WRITE);
+		ByteBuffer sectors = map(data);
 		CACHES = new Cache[CacheConstants.MAXIMUM_INDICES];
 		ARCHIVES = new CacheArchive[CacheConstants.MAXIMUM_ARCHIVES];
 		for (int index = 0; index < CACHES.length; index++) {
 			Path path = root.resolve(CacheConstants.INDEX_PREFIX + index);
 			if (Files.exists(path)) {
-				SeekableByteChannel indexChannel = Files.newByteChannel(path, READ, WRITE);
-				CACHES[index] = new Cache(dataChannel, indexChannel, index);
+				CACHES[index] = new Cache(sectors, map(path), index);
 			}
 		}
 
@@ -102,6 +102,24 @@ public class CacheLoader {
 		}
 	}
 
+	/**
+	 * Memory-maps a cache file as a read-only buffer. The mapping stays valid
+	 * after the channel is closed.
+	 * 
+	 * @param path
+	 *            The path of the file to map.
+	 * @return The mapped file.
+	 * @throws IOException
+	 *             If some I/O exception occurs.
+	 */
+	private static ByteBuffer map(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, READ)) {
+			Preconditions.checkArgument(channel.size() <= Integer.MAX_VALUE,
+					"Cache file " + path + " is too large to map!");
+			return channel.map(MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
 	/**
 	 * Gets an {@link CacheArchive} for the specified {@code id}, this method
 	 * fails-fast if no archive can be found.
@@ -134,7 +152,8 @@ public class CacheLoader {
 
 	/**
 	 * Returns a {@link ByteBuffer} of file data for the specified index within
-	 * the specified {@link Cache}.
+	 * the specified {@link Cache}. The data is read straight from the mapped
+	 * cache without a lock, so this may be called from any thread.
 	 * 
 	 * @param cacheId
 	 *            The id of the cache.
@@ -145,10 +164,7 @@ public class CacheLoader {
 	 *             If some I/O exception occurs.
 	 */
 	public ByteBuf getFile(int cacheId, int indexId) throws IOException {
-		Cache cache = getCache(cacheId);
-		synchronized (cache) {
-			return cache.get(indexId);
-		}
+		return getCache(cacheId).get(indexId);
 	}
 
 	public ByteBuf getFile(FileDescriptor fs) throws IOException {
@@ -157,8 +173,7 @@ public class CacheLoader {
 
 	public byte[] getDecompressedFile(int cacheId, int indexId) throws IOException {
 		ByteBuf compressed = getFile(cacheId, indexId);
-		ByteBuf decompressed = Unpooled.wrappedBuffer(CompressionUtil.gunzip(compressed.array()));
-		return decompressed.array();
+		return CompressionUtil.gunzip(ByteBufUtil.getBytes(compressed));
 	}
 
 	/**
@@ -2,7 +2,6 @@ package com.elvarg.cache.impl;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.channels.SeekableByteChannel;
 
 import com.google.common.base.Preconditions;
 
@@ -43,25 +42,21 @@ public final class Cache {
 	public static final int SECTOR_SIZE = 520;
 
 	/**
-	 * A {@link ByteBuffer} allocated to {@link #SECTOR_SIZE}.
-	 * <p>
-	 * This byte buffer is used to read index and sector data from their
-	 * respective byte channels.
-	 * </p>
+	 * Represents the amount of file data held by a single {@link CacheSector}.
 	 */
-	private final ByteBuffer buffer = ByteBuffer.allocate(SECTOR_SIZE);
+	public static final int SECTOR_DATA_SIZE = SECTOR_SIZE - SECTOR_HEADER_SIZE;
 
 	/**
-	 * A byte channel that contains a series of variable-length bytes which
-	 * represent a sector.
+	 * The memory-mapped data file, which contains a series of sectors. Only
+	 * ever read with absolute indices, so it can be shared by every thread.
 	 */
-	private final SeekableByteChannel sectorChannel;
+	private final ByteBuffer sectors;
 
 	/**
-	 * A byte channel that contains a series of variable-length bytes which
-	 * represent a index.
+	 * The memory-mapped index file, which contains a series of indices. Only
+	 * ever read with absolute indices, so it can be shared by every thread.
 	 */
-	private final SeekableByteChannel indexChannel;
+	private final ByteBuffer indices;
 
 	/**
 	 * Represents the id of this {@link Cache}.
@@ -70,53 +65,63 @@ public final class Cache {
 
 	/**
 	 * Constructs a new {@link Cache} with the specified sector and index
-	 * channels and id.
+	 * buffers and id.
 	 * 
-	 * @param sectorChannel
-	 *            The cache sectors byte channel.
-	 * @param indexChannel
-	 *            The cache sectors index channel.
+	 * @param sectors
+	 *            The memory-mapped data file.
+	 * @param indices
+	 *            The memory-mapped index file.
 	 * @param id
 	 *            This caches id.
 	 */
-	public Cache(SeekableByteChannel sectorChannel, SeekableByteChannel indexChannel, int id) {
-		this.sectorChannel = sectorChannel;
-		this.indexChannel = indexChannel;
+	public Cache(ByteBuffer sectors, ByteBuffer indices, int id) {
+		this.sectors = sectors;
+		this.indices = indices;
 		this.id = ++id;
 	}
 
 	/**
-	 * Gets a {@link ByteBuffer} of data within this cache for the specified
+	 * Gets a {@link ByteBuf} of data within this cache for the specified
 	 * index id.
+	 * <p>
+	 * The data is not copied: each sector of the file is a read-only slice
+	 * of the memory-mapped data file, and files spanning several sectors are
+	 * returned as a composite of those slices. No lock is taken, so any
+	 * amount of threads may read from the cache at once.
+	 * </p>
 	 * 
 	 * @param indexId
 	 *            The file id to get.
-	 * @return A wrapped byte buffer of the specified files data, never
+	 * @return A read-only byte buffer of the specified files data, never
 	 *         {@code null}.
 	 * @throws IOException
 	 *             If some I/O exception occurs.
 	 */
 	public ByteBuf get(int indexId) throws IOException {
 		CacheIndex index = readIndex(indexId);
-		long position = (long) index.getId() * SECTOR_HEADER_SIZE;
-
-		Preconditions.checkArgument(sectorChannel.size() >= position + SECTOR_SIZE);
+		int length = index.getLength();
 
-		byte[] data = new byte[index.getLength()];
+		ByteBuf[] chunks = new ByteBuf[(length + SECTOR_DATA_SIZE - 1) / SECTOR_DATA_SIZE];
 		int next = index.getId();
 		int offset = 0;
 
-		for (int chunk = 0; offset < index.getLength(); chunk++) {
-			int read = Math.min(index.getLength() - offset, 512);
+		for (int chunk = 0; offset < length; chunk++) {
+			int read = Math.min(length - offset, SECTOR_DATA_SIZE);
+			long position = (long) next * SECTOR_SIZE;
+			Preconditions.checkArgument(position + SECTOR_HEADER_SIZE + read <= sectors.limit());
 
-			CacheSector sector = readSector(next, data, offset, read);
+			CacheSector sector = CacheSector.decode(sectors, (int) position);
 			sector.check(id, indexId, chunk);
 
+			ByteBuffer data = sectors.duplicate();
+			data.position((int) position + SECTOR_HEADER_SIZE).limit((int) position + SECTOR_HEADER_SIZE + read);
+			chunks[chunk] = Unpooled.wrappedBuffer(data.slice());
+
 			next = sector.getNextIndexId();
 			offset += read;
 		}
 
-		return Unpooled.wrappedBuffer(data);
+		return chunks.length == 1 ? chunks[0] : Unpooled.wrappedBuffer(chunks);
 	}
 
 	/**
@@ -131,43 +136,14 @@ public final class Cache {
 	 */
 	private CacheIndex readIndex(int indexId) throws IOException {
 		long position = (long) indexId * INDEX_SIZE;
+		if (indexId < 0 || position + INDEX_SIZE > indices.limit()) {
+			throw new IOException("Index " + indexId + " does not exist in cache " + (id - 1) + ".");
+		}
 
-		buffer.clear().limit(INDEX_SIZE);
-		indexChannel.position(position);
-		indexChannel.read(buffer);
-		buffer.flip();
-
-		CacheIndex index = CacheIndex.decode(buffer);
+		CacheIndex index = CacheIndex.decode(indices, (int) position);
 		index.check();
 
 		return index;
 	}
 
-	/**
-	 * Reads a {@link CacheSector} for the specified {@code sectorId} and
-	 * returns the decoded data.
-	 * 
-	 * @param sectorId
-	 *            The id of the sector to read.
-	 * @param data
-	 *            The sectors data.
-	 * @param offset
-	 *            The sectors data offset.
-	 * @param length
-	 *            The length of the sectors data.
-	 * @return The decoded sector.
-	 * @throws IOException
-	 *             If some I/O exception occurs.
-	 */
-	private CacheSector readSector(int sectorId, byte[] data, int offset, int length) throws IOException {
-		long position = (long) sectorId * SECTOR_SIZE;
-
-		buffer.clear().limit(length + SECTOR_HEADER_SIZE);
-		sectorChannel.position(position);
-		sectorChannel.read(buffer);
-		buffer.flip();
-
-		return CacheSector.decode(buffer, data, offset, length);
-	}
-
-}
\ No newline at end of file
+}
@@ -11,6 +11,7 @@ import com.elvarg.util.Misc;
 import com.google.common.base.Preconditions;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 
 /**
@@ -52,6 +53,11 @@ public final class CacheArchive {
 	 *             If some I/O exception occurs.
 	 */
 	public static CacheArchive decode(ByteBuf data) throws IOException {
+		if (!data.hasArray()) {
+			// Files read from the cache are slices of the mapped cache, copy
+			// them to the heap so the archive can be decompressed in place.
+			data = Unpooled.wrappedBuffer(ByteBufUtil.getBytes(data));
+		}
 		int length = ByteBufUtils.getMedium(data);
 		int compressedLength = ByteBufUtils.getMedium(data);
 
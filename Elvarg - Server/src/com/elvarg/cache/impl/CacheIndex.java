@@ -51,6 +51,23 @@ public final class CacheIndex {
 		return new CacheIndex(length, id);
 	}
 
+	/**
+	 * Decodes an {@link CacheIndex} at an absolute position of the specified
+	 * {@link ByteBuffer}, without changing its position. Safe to call from
+	 * several threads reading the same buffer.
+	 * 
+	 * @param buffer
+	 *            The {@link ByteBuffer} to get the index from.
+	 * @param position
+	 *            The position of the index.
+	 * @return The decoded index.
+	 */
+	public static CacheIndex decode(ByteBuffer buffer, int position) {
+		int length = ByteBufUtils.getMedium(buffer, position);
+		int id = ByteBufUtils.getMedium(buffer, position + 3);
+		return new CacheIndex(length, id);
+	}
+
 	/**
 	 * Returns the id of this index.
 	 */
@@ -76,6 +76,26 @@ public final class CacheSector {
 		return new CacheSector(indexId, chunk, nextIndexId, cacheId);
 	}
 
+	/**
+	 * Decodes the header of a {@link CacheSector} at an absolute position of
+	 * the specified {@link ByteBuffer}, without changing its position or
+	 * copying the sector's data. Safe to call from several threads reading
+	 * the same buffer.
+	 * 
+	 * @param buffer
+	 *            The {@link ByteBuffer} to get the sector from.
+	 * @param position
+	 *            The position of the sector.
+	 * @return The decoded sector.
+	 */
+	public static CacheSector decode(ByteBuffer buffer, int position) {
+		int indexId = buffer.getShort(position) & 0xFFFF;
+		int chunk = buffer.getShort(position + 2) & 0xFFFF;
+		int nextIndexId = ByteBufUtils.getMedium(buffer, position + 4);
+		int cacheId = buffer.get(position + 7) & 0xFF;
+		return new CacheSector(indexId, chunk, nextIndexId, cacheId);
+	}
+
 	/**
 	 * Tests whether or not this sector is valid.
 	 * 
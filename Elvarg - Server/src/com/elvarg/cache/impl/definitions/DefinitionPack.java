@@ -0,0 +1,334 @@
+package com.elvarg.cache.impl.definitions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.elvarg.Elvarg;
+import com.elvarg.GameConstants;
+import com.elvarg.world.entity.impl.player.PlayerSaveCodec;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+/**
+ * A compiled copy of the definition files, stored as a single binary file
+ * which is memory-mapped at startup.
+ * <p>
+ * The text and JSON files stay authoritative. The pack is keyed by a
+ * checksum of them, and is rebuilt whenever one of them has changed. Item
+ * definitions are indexed by id and only read from the pack the first time
+ * they are used, so rarely used items never take up any heap. The entries
+ * of the JSON files are stored in the same tagged encoding as binary
+ * character files, which is read much faster than JSON text.
+ * <p>
+ * Can be run from the command line to build the pack ahead of time.
+ */
+public final class DefinitionPack {
+
+	/**
+	 * The file the pack is stored in.
+	 */
+	private static final Path FILE = Paths.get(GameConstants.DEFINITIONS_DIRECTORY + "definitions.pack");
+
+	/**
+	 * The magic number every pack starts with.
+	 */
+	private static final int MAGIC = 0x45444546; // "EDEF"
+
+	/**
+	 * The version of the pack format.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The name of the section holding the item definitions.
+	 */
+	private static final String ITEMS = "items";
+
+	/**
+	 * The text file the item definitions are compiled from.
+	 */
+	private static final String ITEM_SOURCE = GameConstants.DEFINITIONS_DIRECTORY + "items.txt";
+
+	/**
+	 * The JSON files which are compiled, by the path their loaders read
+	 * them from.
+	 */
+	private static final String[] JSON_SOURCES = { GameConstants.DEFINITIONS_DIRECTORY + "weapon_interfaces.json",
+			GameConstants.DEFINITIONS_DIRECTORY + "world_shops.json",
+			GameConstants.DEFINITIONS_DIRECTORY + "world_objects.json",
+			GameConstants.DEFINITIONS_DIRECTORY + "dialogues.json" };
+
+	/**
+	 * The mapped pack, or {@code null} if it isn't loaded. Only ever read
+	 * through duplicates, so it can be shared by every thread.
+	 */
+	private static ByteBuffer pack;
+
+	/**
+	 * The position of every section in the pack, by name.
+	 */
+	private static final Map<String, Integer> sections = new HashMap<>();
+
+	/**
+	 * Loads the pack, building it first if it is missing or any of the
+	 * definition files has changed. If it can't be loaded, the definitions
+	 * are parsed from their files instead.
+	 */
+	public static void init() {
+		long start = System.currentTimeMillis();
+		try {
+			long key = computeKey();
+			if (!open(key)) {
+				build(key);
+				if (!open(key)) {
+					throw new IOException("The rebuilt pack could not be read.");
+				}
+				Elvarg.getLogger().info("Rebuilt " + FILE + ".");
+			}
+			Elvarg.getLogger().info("Loaded the definition pack in " + (System.currentTimeMillis() - start) + "ms.");
+		} catch (Exception e) {
+			Elvarg.getLogger().warning("Could not load " + FILE + ", parsing the definition files instead: " + e);
+			pack = null;
+			sections.clear();
+		}
+	}
+
+	/**
+	 * Checks if the pack is loaded.
+	 */
+	public static boolean isLoaded() {
+		return pack != null;
+	}
+
+	/**
+	 * Reads an item definition from the pack.
+	 *
+	 * @param id
+	 *            the id of the item.
+	 * @return the definition, or {@code null} if the item has none.
+	 */
+	static ItemDefinition getItem(int id) {
+		Integer section = sections.get(ITEMS);
+		if (section == null) {
+			return null;
+		}
+		ByteBuffer buffer = pack.duplicate();
+		int count = buffer.getInt(section);
+		if (id < 0 || id >= count) {
+			return null;
+		}
+		int offset = buffer.getInt(section + Integer.BYTES * (1 + id));
+		if (offset == -1) {
+			return null;
+		}
+		buffer.position(section + offset);
+		return ItemDefinition.decode(buffer);
+	}
+
+	/**
+	 * Reads the entries of a JSON file from the pack.
+	 *
+	 * @param path
+	 *            the path of the JSON file.
+	 * @return the entries, or {@code null} if the file isn't in the pack.
+	 */
+	public static JsonArray getJson(String path) throws IOException {
+		if (pack == null) {
+			return null;
+		}
+		Integer section = sections.get(path);
+		if (section == null) {
+			return null;
+		}
+		ByteBuffer buffer = pack.duplicate();
+		buffer.position(section);
+		int count = buffer.getInt();
+		JsonArray array = new JsonArray();
+		for (int i = 0; i < count; i++) {
+			byte[] entry = new byte[buffer.getInt()];
+			buffer.get(entry);
+			array.add(PlayerSaveCodec.decode(entry));
+		}
+		return array;
+	}
+
+	/**
+	 * Writes a string as its length followed by its UTF-8 bytes.
+	 */
+	static void writeString(DataOutputStream out, String string) throws IOException {
+		byte[] bytes = (string == null ? "" : string).getBytes(StandardCharsets.UTF_8);
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a string written by {@link #writeString}.
+	 */
+	static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Computes the checksum the pack is keyed by, over the format version and
+	 * every definition file.
+	 */
+	private static long computeKey() throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(VERSION);
+		crc.update(Files.readAllBytes(Paths.get(ITEM_SOURCE)));
+		for (String source : JSON_SOURCES) {
+			Path path = Paths.get(source);
+			if (Files.exists(path)) {
+				crc.update(Files.readAllBytes(path));
+			}
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Maps the pack and reads its table of sections.
+	 *
+	 * @param key
+	 *            the checksum of the current definition files.
+	 * @return false if there is no pack for the current definition files.
+	 */
+	private static boolean open(long key) throws IOException {
+		if (!Files.exists(FILE)) {
+			return false;
+		}
+		ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(FILE, StandardOpenOption.READ)) {
+			buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getLong() != key) {
+			return false;
+		}
+		sections.clear();
+		int count = buffer.getInt();
+		for (int i = 0; i < count; i++) {
+			String name = readString(buffer);
+			sections.put(name, buffer.getInt());
+		}
+		pack = buffer;
+		return true;
+	}
+
+	/**
+	 * Compiles every definition file into a new pack.
+	 *
+	 * @param key
+	 *            the checksum of the definition files.
+	 */
+	private static void build(long key) throws IOException {
+		Map<String, byte[]> contents = new LinkedHashMap<>();
+		contents.put(ITEMS, buildItems());
+		for (String source : JSON_SOURCES) {
+			Path path = Paths.get(source);
+			if (Files.exists(path)) {
+				contents.put(source, buildJson(path));
+			}
+		}
+
+		// The header is written twice, the first time only to find out where
+		// the sections start.
+		int headerLength = writeHeader(new DataOutputStream(new ByteArrayOutputStream()), key, contents, 0);
+		Path temp = FILE.resolveSibling(FILE.getFileName() + ".tmp");
+		try (OutputStream file = Files.newOutputStream(temp);
+				DataOutputStream out = new DataOutputStream(file)) {
+			writeHeader(out, key, contents, headerLength);
+			for (byte[] section : contents.values()) {
+				out.write(section);
+			}
+		}
+		Files.move(temp, FILE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Writes the header and the table of sections.
+	 *
+	 * @return the length of the header.
+	 */
+	private static int writeHeader(DataOutputStream out, long key, Map<String, byte[]> contents, int position)
+			throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(key);
+		out.writeInt(contents.size());
+		for (Map.Entry<String, byte[]> section : contents.entrySet()) {
+			writeString(out, section.getKey());
+			out.writeInt(position);
+			position += section.getValue().length;
+		}
+		return out.size();
+	}
+
+	/**
+	 * Compiles the item definitions: the amount of slots, the offset of
+	 * every slot's definition (or -1) and then the definitions.
+	 */
+	private static byte[] buildItems() throws IOException {
+		ItemDefinition[] definitions = ItemDefinition.parse(new File(ITEM_SOURCE));
+		ByteArrayOutputStream records = new ByteArrayOutputStream();
+		DataOutputStream recordOut = new DataOutputStream(records);
+		int[] offsets = new int[definitions.length];
+		int tableLength = Integer.BYTES * (1 + definitions.length);
+		for (int id = 0; id < definitions.length; id++) {
+			if (definitions[id] == null) {
+				offsets[id] = -1;
+				continue;
+			}
+			offsets[id] = tableLength + recordOut.size();
+			definitions[id].encode(recordOut);
+		}
+		ByteArrayOutputStream section = new ByteArrayOutputStream(tableLength + records.size());
+		DataOutputStream out = new DataOutputStream(section);
+		out.writeInt(definitions.length);
+		for (int offset : offsets) {
+			out.writeInt(offset);
+		}
+		records.writeTo(out);
+		return section.toByteArray();
+	}
+
+	/**
+	 * Compiles the entries of a JSON file: the amount of entries and then
+	 * every entry, prefixed by its length.
+	 */
+	private static byte[] buildJson(Path path) throws IOException {
+		JsonArray array = new JsonParser().parse(new String(Files.readAllBytes(path), StandardCharsets.UTF_8))
+				.getAsJsonArray();
+		ByteArrayOutputStream section = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(section);
+		out.writeInt(array.size());
+		for (JsonElement element : array) {
+			byte[] entry = PlayerSaveCodec.encode(element.getAsJsonObject());
+			out.writeInt(entry.length);
+			out.write(entry);
+		}
+		return section.toByteArray();
+	}
+
+	public static void main(String[] args) throws IOException {
+		build(computeKey());
+		System.out.println("Built " + FILE + " (" + Files.size(FILE) / 1024 + " KB).");
+	}
+}
@@ -1,9 +1,11 @@
 package com.elvarg.cache.impl.definitions;
 
 import java.io.BufferedReader;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import com.elvarg.GameConstants;
 import com.elvarg.world.content.skills.SkillManager;
@@ -29,12 +31,27 @@ public class ItemDefinition {
 	private static ItemDefinition[] definitions = new ItemDefinition[MAX_AMOUNT_OF_ITEMS];
 
 	/**
-	 * Loading all item definitions
+	 * Loading all item definitions. If the definition pack is loaded,
+	 * definitions are instead read from it the first time they are used.
 	 */
 	public static void init() {
+		if (DefinitionPack.isLoaded()) {
+			return;
+		}
+		definitions = parse(new File(GameConstants.DEFINITIONS_DIRECTORY + "items.txt"));
+	}
+
+	/**
+	 * Parses the item definitions from their text file.
+	 * 
+	 * @param file
+	 *            The text file.
+	 * @return The definitions, indexed by id.
+	 */
+	static ItemDefinition[] parse(File file) {
+		ItemDefinition[] definitions = new ItemDefinition[MAX_AMOUNT_OF_ITEMS];
 		ItemDefinition definition = definitions[0];
 		try {
-			File file = new File(GameConstants.DEFINITIONS_DIRECTORY + "items.txt");
 			BufferedReader reader = new BufferedReader(new FileReader(file));
 			String line;
 			while ((line = reader.readLine()) != null) {
@@ -135,12 +152,44 @@ public class ItemDefinition {
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		return definitions;
 	}
 
+	/**
+	 * Gets every item definition. Reads every definition from the definition
+	 * pack which has not been used yet, so should only be used when really
+	 * every definition is needed.
+	 */
 	public static ItemDefinition[] getDefinitions() {
+		if (DefinitionPack.isLoaded()) {
+			for (int id = 0; id < definitions.length; id++) {
+				lookup(id);
+			}
+		}
 		return definitions;
 	}
 
+	/**
+	 * Gets the definition of an item, reading it from the definition pack if
+	 * it has not been used yet.
+	 * 
+	 * @param id
+	 *            The id of the item.
+	 * @return The definition, or {@code null} if the item has none.
+	 */
+	private static ItemDefinition lookup(int id) {
+		ItemDefinition definition = definitions[id];
+		if (definition == null && DefinitionPack.isLoaded()) {
+			definition = DefinitionPack.getItem(id);
+			if (definition != null) {
+				// Two threads may read the same definition at once, either
+				// copy is just as good.
+				definitions[id] = definition;
+			}
+		}
+		return definition;
+	}
+
 	/**
 	 * Gets the item definition correspondent to the id.
 	 * 
@@ -149,7 +198,11 @@ public class ItemDefinition {
 	 * @return definitions[id].
 	 */
 	public static ItemDefinition forId(int id) {
-		return (id < 0 || id > definitions.length || definitions[id] == null) ? create(id) : definitions[id];
+		if (id < 0 || id >= definitions.length) {
+			return create(id);
+		}
+		ItemDefinition definition = lookup(id);
+		return definition == null ? create(id) : definition;
 	}
 
 	/**
@@ -371,12 +424,105 @@ public class ItemDefinition {
 
 	public static int getItemId(String itemName) {
 		for (int i = 0; i < MAX_AMOUNT_OF_ITEMS; i++) {
-			if (definitions[i] != null) {
-				if (definitions[i].getName().equalsIgnoreCase(itemName)) {
-					return definitions[i].getId();
+			ItemDefinition definition = lookup(i);
+			if (definition != null) {
+				if (definition.getName().equalsIgnoreCase(itemName)) {
+					return definition.getId();
 				}
 			}
 		}
 		return -1;
 	}
+
+	/**
+	 * Writes this definition to the definition pack.
+	 * 
+	 * @param out
+	 *            The stream to write to.
+	 */
+	void encode(DataOutputStream out) throws IOException {
+		out.writeShort(id);
+		DefinitionPack.writeString(out, name);
+		DefinitionPack.writeString(out, examine);
+		out.writeInt(value);
+		out.writeByte((stackable ? 1 : 0) | (tradeable ? 2 : 0) | (sellable ? 4 : 0) | (dropable ? 8 : 0)
+				| (noted ? 16 : 0) | (doubleHanded ? 32 : 0));
+		out.writeInt(noteId);
+		out.writeByte(equipmentType.ordinal());
+		for (int anim : new int[] { blockAnim, standAnim, walkAnim, runAnim, standTurnAnim, turn180Anim,
+				turn90CWAnim, turn90CCWAnim, interfaceId }) {
+			out.writeInt(anim);
+		}
+
+		// Most items have no bonuses or requirements, only write them for
+		// the ones that do.
+		int bonuses = 0;
+		for (int i = 0; i < bonus.length; i++) {
+			if (bonus[i] != 0) {
+				bonuses++;
+			}
+		}
+		out.writeByte(bonuses);
+		for (int i = 0; i < bonus.length; i++) {
+			if (bonus[i] != 0) {
+				out.writeByte(i);
+				out.writeDouble(bonus[i]);
+			}
+		}
+		int requirements = 0;
+		for (int i = 0; i < requirement.length; i++) {
+			if (requirement[i] != 0) {
+				requirements++;
+			}
+		}
+		out.writeByte(requirements);
+		for (int i = 0; i < requirement.length; i++) {
+			if (requirement[i] != 0) {
+				out.writeByte(i);
+				out.writeInt(requirement[i]);
+			}
+		}
+	}
+
+	/**
+	 * Reads a definition from the definition pack.
+	 * 
+	 * @param buffer
+	 *            The buffer to read from, positioned at the definition.
+	 * @return The definition.
+	 */
+	static ItemDefinition decode(ByteBuffer buffer) {
+		ItemDefinition definition = new ItemDefinition();
+		definition.id = buffer.getShort() & 0xFFFF;
+		definition.name = DefinitionPack.readString(buffer);
+		definition.examine = DefinitionPack.readString(buffer);
+		definition.value = buffer.getInt();
+		int flags = buffer.get();
+		definition.stackable = (flags & 1) != 0;
+		definition.tradeable = (flags & 2) != 0;
+		definition.sellable = (flags & 4) != 0;
+		definition.dropable = (flags & 8) != 0;
+		definition.noted = (flags & 16) != 0;
+		definition.doubleHanded = (flags & 32) != 0;
+		definition.noteId = buffer.getInt();
+		definition.equipmentType = EquipmentType.values()[buffer.get()];
+		definition.blockAnim = buffer.getInt();
+		definition.standAnim = buffer.getInt();
+		definition.walkAnim = buffer.getInt();
+		definition.runAnim = buffer.getInt();
+		definition.standTurnAnim = buffer.getInt();
+		definition.turn180Anim = buffer.getInt();
+		definition.turn90CWAnim = buffer.getInt();
+		definition.turn90CCWAnim = buffer.getInt();
+		definition.interfaceId = buffer.getInt();
+		int bonuses = buffer.get();
+		for (int i = 0; i < bonuses; i++) {
+			definition.bonus[buffer.get()] = buffer.getDouble();
+		}
+		int requirements = buffer.get();
+		for (int i = 0; i < requirements; i++) {
+			definition.requirement[buffer.get()] = buffer.getInt();
+		}
+		return definition;
+	}
 }
@@ -28,10 +28,11 @@ public final class GameEngine implements Runnable {
 
 			switch (next()) {
 			case PACKET_PROCESSING:
-				World.getPlayers().forEach($it -> $it.getSession().handleQueuedPackets(true));
+				World.getTickScheduler().time(TickPhase.PACKETS,
+						() -> World.getPlayers().forEach($it -> $it.getSession().handleQueuedPackets(true)));
 				break;
 			case GAME_PROCESSING:
-				TaskManager.sequence();
+				World.getTickScheduler().time(TickPhase.TASKS, TaskManager::sequence);
 				World.sequence();
 				break;
 			}
@@ -0,0 +1,216 @@
+package com.elvarg.engine;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.ObjectName;
+
+import com.elvarg.Elvarg;
+import com.elvarg.GameConstants;
+import com.elvarg.net.login.LoginService;
+import com.elvarg.util.LatencyHistogram;
+import com.elvarg.world.model.movement.PathCache;
+
+import jaggrab.dispatch.RequestExecutor;
+
+/**
+ * Always-on timing of where each game cycle's time is spent: per
+ * {@link TickPhase}, per packet opcode and per {@link com.elvarg.engine.task.Task}
+ * class, along with the state of the login queue. The results are available
+ * through the {@code ::perf} command and over JMX.
+ */
+public final class Profiler implements ProfilerMBean {
+
+	/**
+	 * The amount of packet opcodes.
+	 */
+	private static final int OPCODES = 256;
+
+	/**
+	 * The amount of entries shown per category when reporting.
+	 */
+	private static final int REPORT_LIMIT = 5;
+
+	/**
+	 * The timings of each phase of the game cycle.
+	 */
+	private static final LatencyHistogram[] phases = new LatencyHistogram[TickPhase.values().length];
+
+	/**
+	 * The timings of each packet opcode, created when first handled.
+	 */
+	private static final AtomicReferenceArray<LatencyHistogram> packets = new AtomicReferenceArray<>(OPCODES);
+
+	/**
+	 * The timings of each task class, created when first executed.
+	 */
+	private static final Map<Class<?>, LatencyHistogram> tasks = new ConcurrentHashMap<>();
+
+	static {
+		for (int i = 0; i < phases.length; i++) {
+			phases[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * Records the time a phase of the game cycle took.
+	 */
+	public static void recordPhase(TickPhase phase, long nanos) {
+		phases[phase.ordinal()].record(nanos);
+	}
+
+	/**
+	 * Records the time handling a packet took.
+	 */
+	public static void recordPacket(int opcode, long nanos) {
+		LatencyHistogram histogram = packets.get(opcode);
+		if (histogram == null) {
+			// Another thread may set the slot, or clear() may null it again,
+			// between the CAS and a second read, so only fall back to the
+			// slot's histogram if there still is one.
+			LatencyHistogram created = new LatencyHistogram();
+			LatencyHistogram current = packets.compareAndSet(opcode, null, created) ? created : packets.get(opcode);
+			histogram = current != null ? current : created;
+		}
+		histogram.record(nanos);
+	}
+
+	/**
+	 * Records the time executing a task took.
+	 */
+	public static void recordTask(Class<?> type, long nanos) {
+		LatencyHistogram histogram = tasks.get(type);
+		if (histogram == null) {
+			histogram = tasks.computeIfAbsent(type, t -> new LatencyHistogram());
+		}
+		histogram.record(nanos);
+	}
+
+	/**
+	 * Registers the profiler with the platform MBean server.
+	 */
+	public static void registerMBean() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new Profiler(),
+					new ObjectName("com.elvarg:type=Profiler"));
+		} catch (Exception e) {
+			Elvarg.getLogger().warning("Could not register the profiler MBean: " + e);
+		}
+	}
+
+	/**
+	 * Builds a short report of the phases and the most expensive packets and
+	 * tasks, for in-game display.
+	 *
+	 * @return the report lines.
+	 */
+	public static List<String> report() {
+		List<String> lines = new ArrayList<>();
+		for (TickPhase phase : TickPhase.values()) {
+			LatencyHistogram histogram = phases[phase.ordinal()];
+			lines.add(phase.name().toLowerCase() + ": p50=" + histogram.getPercentile(50) + "us p99="
+					+ histogram.getPercentile(99) + "us max=" + histogram.getMax() + "us");
+		}
+		lines.add("logins: " + LoginService.summary());
+		lines.add("paths: " + PathCache.summary());
+		if (GameConstants.JAGGRAB_ENABLED) {
+			for (String line : RequestExecutor.summary()) {
+				lines.add("fileserver " + line);
+			}
+		}
+		List<String> packetLines = summarizePackets();
+		lines.add("Top packets by total time:");
+		lines.addAll(packetLines.subList(0, Math.min(REPORT_LIMIT, packetLines.size())));
+		List<String> taskLines = summarizeTasks();
+		lines.add("Top tasks by total time:");
+		lines.addAll(taskLines.subList(0, Math.min(REPORT_LIMIT, taskLines.size())));
+		return lines;
+	}
+
+	/**
+	 * Summarizes every handled opcode, most expensive first.
+	 */
+	private static List<String> summarizePackets() {
+		List<Integer> opcodes = new ArrayList<>();
+		for (int opcode = 0; opcode < OPCODES; opcode++) {
+			if (packets.get(opcode) != null) {
+				opcodes.add(opcode);
+			}
+		}
+		opcodes.sort(Comparator.comparingLong((Integer opcode) -> packets.get(opcode).getTotal()).reversed());
+		List<String> lines = new ArrayList<>();
+		for (int opcode : opcodes) {
+			lines.add("opcode " + opcode + ": " + packets.get(opcode).summary());
+		}
+		return lines;
+	}
+
+	/**
+	 * Summarizes every executed task class, most expensive first.
+	 */
+	private static List<String> summarizeTasks() {
+		List<Map.Entry<Class<?>, LatencyHistogram>> entries = new ArrayList<>(tasks.entrySet());
+		entries.sort(Comparator.comparingLong((Map.Entry<Class<?>, LatencyHistogram> e) -> e.getValue().getTotal())
+				.reversed());
+		List<String> lines = new ArrayList<>();
+		for (Map.Entry<Class<?>, LatencyHistogram> entry : entries) {
+			lines.add(entry.getKey().getName() + ": " + entry.getValue().summary());
+		}
+		return lines;
+	}
+
+	@Override
+	public String[] getPhaseSummaries() {
+		String[] lines = new String[phases.length];
+		for (TickPhase phase : TickPhase.values()) {
+			lines[phase.ordinal()] = phase.name().toLowerCase() + ": " + phases[phase.ordinal()].summary();
+		}
+		return lines;
+	}
+
+	@Override
+	public String[] getPacketSummaries() {
+		return summarizePackets().toArray(new String[0]);
+	}
+
+	@Override
+	public String[] getTaskSummaries() {
+		return summarizeTasks().toArray(new String[0]);
+	}
+
+	@Override
+	public String getLoginSummary() {
+		return LoginService.summary();
+	}
+
+	@Override
+	public int getLoginQueueSize() {
+		return LoginService.getQueueSize();
+	}
+
+	@Override
+	public void reset() {
+		clear();
+	}
+
+	/**
+	 * Clears all recorded timings.
+	 */
+	public static void clear() {
+		for (LatencyHistogram histogram : phases) {
+			histogram.reset();
+		}
+		for (int opcode = 0; opcode < OPCODES; opcode++) {
+			packets.set(opcode, null);
+		}
+		tasks.clear();
+		LoginService.reset();
+		PathCache.reset();
+		RequestExecutor.reset();
+	}
+}
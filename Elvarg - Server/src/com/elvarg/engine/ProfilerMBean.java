@@ -0,0 +1,40 @@
+package com.elvarg.engine;
+
+/**
+ * The JMX management interface of the {@link Profiler}. Connect to the server
+ * process with any JMX client (such as JConsole) and browse to
+ * {@code com.elvarg:type=Profiler}.
+ */
+public interface ProfilerMBean {
+
+	/**
+	 * Gets a summary line for each phase of the game cycle.
+	 */
+	String[] getPhaseSummaries();
+
+	/**
+	 * Gets a summary line for each packet opcode which has been handled.
+	 */
+	String[] getPacketSummaries();
+
+	/**
+	 * Gets a summary line for each {@link com.elvarg.engine.task.Task} class
+	 * which has been executed.
+	 */
+	String[] getTaskSummaries();
+
+	/**
+	 * Gets a summary of the login queue and login latencies.
+	 */
+	String getLoginSummary();
+
+	/**
+	 * Gets the amount of logins waiting to be processed.
+	 */
+	int getLoginQueueSize();
+
+	/**
+	 * Clears all recorded timings.
+	 */
+	void reset();
+}
@@ -0,0 +1,260 @@
+package com.elvarg.engine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * The services loaded at startup, along with the services each of them needs
+ * to be loaded first.
+ * <p>
+ * Every stage starts as soon as all of its dependencies have finished, so
+ * stages which don't depend on each other are loaded at the same time. If a
+ * stage fails, the stages depending on it are never started and startup
+ * fails with the error of the stage which failed first.
+ */
+public final class StartupGraph {
+
+	/**
+	 * The logger for this class.
+	 */
+	private static final Logger logger = Logger.getLogger(StartupGraph.class.getName());
+
+	/**
+	 * The stages, by name, in the order they were added.
+	 */
+	private final Map<String, Stage> stages = new LinkedHashMap<>();
+
+	/**
+	 * Adds a stage.
+	 *
+	 * @param name
+	 *            the name of the stage.
+	 * @param action
+	 *            loads the service.
+	 * @param dependencies
+	 *            the names of the stages which must finish first.
+	 * @return this graph, for chaining.
+	 */
+	public StartupGraph add(String name, StartupAction action, String... dependencies) {
+		if (stages.containsKey(name)) {
+			throw new IllegalArgumentException("Duplicate startup stage '" + name + "'.");
+		}
+		stages.put(name, new Stage(name, action, dependencies));
+		return this;
+	}
+
+	/**
+	 * Loads every stage, and waits for all of them to finish.
+	 *
+	 * @param timeout
+	 *            the maximum time to wait.
+	 * @param unit
+	 *            the unit of the timeout.
+	 * @throws IllegalStateException
+	 *             if a dependency is missing or circular, or a stage failed.
+	 * @throws TimeoutException
+	 *             if the stages took too long.
+	 */
+	public void run(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+		List<Stage> order = sort();
+		// Most stages spend their time reading files, so every stage gets a
+		// thread of its own rather than one per processor.
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, order.size()),
+				new ThreadFactoryBuilder().setNameFormat("GameLoadingThread-%d").build());
+
+		long start = System.nanoTime();
+		AtomicLong sequential = new AtomicLong();
+		CompletableFuture<Void> done = new CompletableFuture<>();
+		Map<String, CompletableFuture<Void>> futures = new HashMap<>();
+		for (Stage stage : order) {
+			CompletableFuture<?>[] dependencies = new CompletableFuture<?>[stage.dependencies.length];
+			for (int i = 0; i < dependencies.length; i++) {
+				dependencies[i] = futures.get(stage.dependencies[i]);
+			}
+			futures.put(stage.name, CompletableFuture.allOf(dependencies).thenRunAsync(() -> {
+				if (done.isDone()) {
+					// Another stage failed, there is no point in going on.
+					throw new IllegalStateException("Startup was aborted.");
+				}
+				long stageStart = System.nanoTime();
+				try {
+					stage.action.run();
+				} catch (Throwable t) {
+					List<String> dependents = dependents(stage.name);
+					done.completeExceptionally(new IllegalStateException("Startup stage '" + stage.name + "' failed"
+							+ (dependents.isEmpty() ? "." : ", so " + describe(dependents) + " could not be loaded."),
+							t));
+					throw new IllegalStateException(t);
+				}
+				if (done.isCompletedExceptionally()) {
+					return;
+				}
+				long elapsed = System.nanoTime() - stageStart;
+				sequential.addAndGet(elapsed);
+				logger.info("Loaded " + stage.name + " in " + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms.");
+			}, executor));
+		}
+		CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+				.thenRun(() -> done.complete(null));
+
+		try {
+			done.get(timeout, unit);
+		} catch (ExecutionException e) {
+			throw (IllegalStateException) e.getCause();
+		} catch (TimeoutException e) {
+			List<String> pending = new ArrayList<>();
+			for (Stage stage : order) {
+				if (!futures.get(stage.name).isDone()) {
+					pending.add(stage.name);
+				}
+			}
+			TimeoutException failure = new TimeoutException(
+					"Startup took too long, still loading " + describe(pending) + ".");
+			done.completeExceptionally(failure);
+			throw failure;
+		} finally {
+			executor.shutdownNow();
+		}
+		logger.info("Loaded " + order.size() + " startup stages in "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms ("
+				+ TimeUnit.NANOSECONDS.toMillis(sequential.get()) + "ms of work).");
+	}
+
+	/**
+	 * Orders the stages so every stage comes after its dependencies.
+	 *
+	 * @throws IllegalStateException
+	 *             if a dependency is missing or circular.
+	 */
+	private List<Stage> sort() {
+		List<Stage> order = new ArrayList<>(stages.size());
+		Map<String, Boolean> visited = new HashMap<>();
+		for (Stage stage : stages.values()) {
+			visit(stage, visited, order, new ArrayList<>());
+		}
+		return order;
+	}
+
+	/**
+	 * Adds a stage to the order after all of its dependencies.
+	 *
+	 * @param visited
+	 *            the stages which have been visited: false while their
+	 *            dependencies are being visited, true once they are ordered.
+	 * @param path
+	 *            the stages being visited, to describe a circular dependency.
+	 */
+	private void visit(Stage stage, Map<String, Boolean> visited, List<Stage> order, List<String> path) {
+		Boolean state = visited.get(stage.name);
+		if (state == Boolean.TRUE) {
+			return;
+		}
+		path.add(stage.name);
+		if (state == Boolean.FALSE) {
+			throw new IllegalStateException("Circular startup dependency: "
+					+ String.join(" -> ", path.subList(path.indexOf(stage.name), path.size())) + ".");
+		}
+		visited.put(stage.name, Boolean.FALSE);
+		for (String name : stage.dependencies) {
+			Stage dependency = stages.get(name);
+			if (dependency == null) {
+				throw new IllegalStateException(
+						"Startup stage '" + stage.name + "' depends on '" + name + "', which does not exist.");
+			}
+			visit(dependency, visited, order, path);
+		}
+		visited.put(stage.name, Boolean.TRUE);
+		path.remove(path.size() - 1);
+		order.add(stage);
+	}
+
+	/**
+	 * Gets the names of every stage which depends on a stage, directly or
+	 * not.
+	 */
+	private List<String> dependents(String name) {
+		List<String> dependents = new ArrayList<>();
+		boolean added = true;
+		while (added) {
+			added = false;
+			for (Stage stage : stages.values()) {
+				if (dependents.contains(stage.name)) {
+					continue;
+				}
+				for (String dependency : stage.dependencies) {
+					if (dependency.equals(name) || dependents.contains(dependency)) {
+						dependents.add(stage.name);
+						added = true;
+						break;
+					}
+				}
+			}
+		}
+		return dependents;
+	}
+
+	/**
+	 * Describes a list of stages.
+	 */
+	private static String describe(List<String> names) {
+		return "'" + String.join("', '", names) + "'";
+	}
+
+	/**
+	 * Loads a service.
+	 */
+	@FunctionalInterface
+	public interface StartupAction {
+
+		/**
+		 * Loads the service.
+		 *
+		 * @throws Exception
+		 *             if the service could not be loaded.
+		 */
+		void run() throws Exception;
+	}
+
+	/**
+	 * A service, along with the services it needs to be loaded first.
+	 */
+	private static final class Stage {
+
+		/**
+		 * The name of the stage.
+		 */
+		private final String name;
+
+		/**
+		 * Loads the service.
+		 */
+		private final StartupAction action;
+
+		/**
+		 * The names of the stages which must finish first.
+		 */
+		private final String[] dependencies;
+
+		/**
+		 * Creates a new {@link Stage}.
+		 */
+		private Stage(String name, StartupAction action, String[] dependencies) {
+			this.name = name;
+			this.action = action;
+			this.dependencies = dependencies;
+		}
+	}
+}
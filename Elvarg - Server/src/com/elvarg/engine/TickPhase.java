@@ -0,0 +1,49 @@
+package com.elvarg.engine;
+
+/**
+ * The phases of a single game cycle, in the order they are executed.
+ */
+public enum TickPhase {
+
+	/**
+	 * Handling prioritized packets between game cycles.
+	 */
+	PACKETS,
+
+	/**
+	 * Handling queued logins and logouts, and registering and deregistering
+	 * queued characters.
+	 */
+	LOGINS,
+
+	/**
+	 * Processing the {@link com.elvarg.engine.task.TaskManager}.
+	 */
+	TASKS,
+
+	/**
+	 * Processing players and npcs before they are updated.
+	 */
+	PRE_UPDATE,
+
+	/**
+	 * Player and npc updating.
+	 */
+	UPDATE,
+
+	/**
+	 * Resetting players and npcs for the next cycle.
+	 */
+	POST_UPDATE,
+
+	/**
+	 * Processing global objects and other misc world updating.
+	 */
+	OBJECTS,
+
+	/**
+	 * Flushing every player's channel once everything for the cycle has been
+	 * written.
+	 */
+	FLUSH;
+}
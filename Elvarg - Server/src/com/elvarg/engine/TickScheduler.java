@@ -0,0 +1,162 @@
+package com.elvarg.engine;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+import com.elvarg.Elvarg;
+import com.elvarg.GameConstants;
+import com.elvarg.world.entity.impl.Character;
+import com.elvarg.world.entity.impl.CharacterList;
+
+/**
+ * Runs the parallel stages of a game cycle on a work-stealing
+ * {@link ForkJoinPool}, and records how long each {@link TickPhase} of the
+ * cycle took, both for the last cycle and in the {@link Profiler}.
+ * <p>
+ * Characters are split into batches by index range rather than being
+ * submitted one by one, so idle threads can steal whole batches from busy
+ * ones.
+ */
+public final class TickScheduler {
+
+	/**
+	 * The amount of character slots a single batch covers before it is split
+	 * further.
+	 */
+	private static final int BATCH_SIZE = 32;
+
+	/**
+	 * The time budget of a single game cycle, in nanoseconds.
+	 */
+	private static final long CYCLE_BUDGET = GameConstants.ENGINE_PROCESSING_CYCLE_RATE * 2 * 1_000_000L;
+
+	/**
+	 * The pool that executes the batches.
+	 */
+	private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+		ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+		thread.setName("UpdateThread-" + thread.getPoolIndex());
+		thread.setPriority(Thread.MAX_PRIORITY);
+		return thread;
+	}, null, false);
+
+	/**
+	 * The time each phase took during the current or last cycle, in
+	 * nanoseconds.
+	 */
+	private final long[] timings = new long[TickPhase.values().length];
+
+	/**
+	 * Executes {@code action} on every character in {@code list} in parallel,
+	 * and blocks until all of them have completed.
+	 *
+	 * @param list
+	 *            the characters to process.
+	 * @param action
+	 *            the action to execute on each character.
+	 */
+	public <E extends Character> void forEachParallel(CharacterList<E> list, Consumer<? super E> action) {
+		if (list.size() == 0) {
+			return;
+		}
+		pool.invoke(new Batch<>(list, action, 0, list.capacity()));
+	}
+
+	/**
+	 * Executes a phase of the game cycle and records how long it took.
+	 *
+	 * @param phase
+	 *            the phase being executed.
+	 * @param action
+	 *            the phase's work.
+	 */
+	public void time(TickPhase phase, Runnable action) {
+		final long start = System.nanoTime();
+		try {
+			action.run();
+		} finally {
+			final long elapsed = System.nanoTime() - start;
+			timings[phase.ordinal()] = elapsed;
+			Profiler.recordPhase(phase, elapsed);
+		}
+	}
+
+	/**
+	 * Called once all phases of a cycle have been executed. Logs a breakdown
+	 * of the cycle if it went over budget.
+	 */
+	public void completeCycle() {
+		long total = 0;
+		for (long timing : timings) {
+			total += timing;
+		}
+		if (total > CYCLE_BUDGET) {
+			Elvarg.getLogger().warning("Game cycle took " + (total / 1_000_000) + "ms " + describe());
+		}
+	}
+
+	/**
+	 * Gets the time a phase took during the last cycle.
+	 *
+	 * @param phase
+	 *            the phase.
+	 * @return the time, in nanoseconds.
+	 */
+	public long getTiming(TickPhase phase) {
+		return timings[phase.ordinal()];
+	}
+
+	/**
+	 * Describes the phase timings of the last cycle.
+	 *
+	 * @return the description.
+	 */
+	public String describe() {
+		StringBuilder sb = new StringBuilder("[");
+		for (TickPhase phase : TickPhase.values()) {
+			if (sb.length() > 1) {
+				sb.append(", ");
+			}
+			sb.append(phase.name().toLowerCase()).append('=').append(timings[phase.ordinal()] / 1_000).append("us");
+		}
+		return sb.append(']').toString();
+	}
+
+	/**
+	 * A range of character slots which splits itself in two until it is
+	 * small enough to be executed directly.
+	 */
+	private static final class Batch<E extends Character> extends RecursiveAction {
+
+		private static final long serialVersionUID = 3424393519612386410L;
+
+		private final CharacterList<E> list;
+		private final Consumer<? super E> action;
+		private final int from;
+		private final int to;
+
+		private Batch(CharacterList<E> list, Consumer<? super E> action, int from, int to) {
+			this.list = list;
+			this.action = action;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > BATCH_SIZE) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Batch<>(list, action, from, middle), new Batch<>(list, action, middle, to));
+				return;
+			}
+			for (int slot = from; slot < to; slot++) {
+				E e = list.get(slot);
+				if (e != null) {
+					action.accept(e);
+				}
+			}
+		}
+	}
+}
@@ -2,6 +2,8 @@ package com.elvarg.engine.task;
 
 import java.util.Objects;
 
+import com.elvarg.engine.Profiler;
+
 /**
  * Represents a periodic task that can be scheduled with a
  * {@link TaskScheduler}.
@@ -34,6 +36,11 @@ public abstract class Task {
 	 */
 	private boolean running = true;
 
+	/**
+	 * The {@link TaskManager} cycle on which this task will next be executed.
+	 */
+	private long dueCycle;
+
 	public void setEventRunning(boolean running) {
 		this.running = running;
 	}
@@ -158,12 +165,39 @@ public abstract class Task {
 	 */
 	public boolean tick() {
 		if (running && --countdown == 0) {
+			return fire();
+		}
+		return running;
+	}
+
+	/**
+	 * Executes this task and restarts its countdown. Used by the
+	 * {@link TaskManager}, which only visits a task on the cycle it is due.
+	 * 
+	 * @return A flag indicating if the task is running.
+	 */
+	boolean fire() {
+		if (running) {
+			final long start = System.nanoTime();
 			execute();
+			Profiler.recordTask(getClass(), System.nanoTime() - start);
 			countdown = delay;
 		}
 		return running;
 	}
 
+	int getCountdown() {
+		return countdown;
+	}
+
+	long getDueCycle() {
+		return dueCycle;
+	}
+
+	void setDueCycle(long dueCycle) {
+		this.dueCycle = dueCycle;
+	}
+
 	/**
 	 * Performs this task's action.
 	 */
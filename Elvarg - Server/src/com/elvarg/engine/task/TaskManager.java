@@ -1,15 +1,66 @@
 package com.elvarg.engine.task;
 
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 
+/**
+ * Schedules {@link Task}s on a hashed timing wheel, so that each cycle only
+ * visits the tasks which are due on it rather than every active task.
+ * <p>
+ * A task due on cycle {@code c} is kept in slot {@code c % WHEEL_SIZE}. Tasks
+ * with delays longer than the wheel stay in their slot for extra rotations
+ * until their cycle comes around. Tasks are also indexed by key, so
+ * {@link #cancelTasks(Object)} only touches the tasks bound to that key. Keys
+ * must therefore have a {@code hashCode} which agrees with their
+ * {@code equals}.
+ */
 public final class TaskManager {
 
+	/**
+	 * The amount of slots in the wheel. Must be a power of two.
+	 */
+	private static final int WHEEL_SIZE = 512;
+
 	private final static Queue<Task> pendingTasks = new LinkedList<>();
 
-	private final static List<Task> activeTasks = new LinkedList<>();
+	/**
+	 * The slots of the wheel, each holding the tasks due on cycles which map
+	 * to it.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private final static List<Task>[] wheel = new List[WHEEL_SIZE];
+
+	/**
+	 * An empty slot list, swapped in for the slot being processed.
+	 */
+	private static List<Task> spare = new ArrayList<>();
+
+	/**
+	 * The tasks which have been submitted, grouped by their key.
+	 */
+	private final static Map<Object, Set<Task>> tasksByKey = new HashMap<>();
+
+	/**
+	 * The current cycle.
+	 */
+	private static long cycle;
+
+	/**
+	 * The amount of tasks on the wheel.
+	 */
+	private static int activeTasks;
+
+	static {
+		for (int i = 0; i < WHEEL_SIZE; i++) {
+			wheel[i] = new ArrayList<>();
+		}
+	}
 
 	private TaskManager() {
 		throw new UnsupportedOperationException("This class cannot be instantiated!");
@@ -17,20 +68,46 @@ public final class TaskManager {
 
 	public static void sequence() {
 		try {
+			cycle++;
+
 			Task t;
 			while ((t = pendingTasks.poll()) != null) {
 				if (t.isRunning()) {
-					activeTasks.add(t);
+					// The task's first countdown step happens this cycle.
+					schedule(t, cycle + Math.max(t.getCountdown(), 1) - 1);
+				} else {
+					unindex(t);
 				}
 			}
 
-			Iterator<Task> it = activeTasks.iterator();
+			final int slot = (int) (cycle & (WHEEL_SIZE - 1));
+			final List<Task> due = wheel[slot];
+			wheel[slot] = spare;
 
-			while (it.hasNext()) {
-				t = it.next();
-				if (!t.tick())
-					it.remove();
+			for (int i = 0; i < due.size(); i++) {
+				t = due.get(i);
+				if (t.isStopped()) {
+					remove(t);
+					continue;
+				}
+				if (t.getDueCycle() != cycle) {
+					wheel[slot].add(t);
+					continue;
+				}
+				activeTasks--;
+				try {
+					if (t.fire()) {
+						schedule(t, cycle + Math.max(t.getDelay(), 1));
+					} else {
+						unindex(t);
+					}
+				} catch (Throwable e) {
+					e.printStackTrace();
+					schedule(t, cycle + Math.max(t.getDelay(), 1));
+				}
 			}
+			due.clear();
+			spare = due;
 		} catch (Throwable e) {
 			e.printStackTrace();
 		}
@@ -43,18 +120,53 @@ public final class TaskManager {
 			task.execute();
 		}
 		pendingTasks.add(task);
+		Set<Task> tasks = tasksByKey.get(task.getKey());
+		if (tasks == null) {
+			tasks = new LinkedHashSet<>();
+			tasksByKey.put(task.getKey(), tasks);
+		}
+		tasks.add(task);
 	}
 
 	public static void cancelTasks(Object key) {
 		try {
-			pendingTasks.stream().filter(t -> t.getKey().equals(key)).forEach(t -> t.stop());
-			activeTasks.stream().filter(t -> t.getKey().equals(key)).forEach(t -> t.stop());
+			Set<Task> tasks = tasksByKey.remove(key);
+			if (tasks != null) {
+				tasks.forEach(Task::stop);
+			}
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 	}
 
 	public static int getTaskAmount() {
-		return (pendingTasks.size() + activeTasks.size());
+		return (pendingTasks.size() + activeTasks);
+	}
+
+	/**
+	 * Places a task on the wheel.
+	 */
+	private static void schedule(Task task, long dueCycle) {
+		task.setDueCycle(dueCycle);
+		wheel[(int) (dueCycle & (WHEEL_SIZE - 1))].add(task);
+		activeTasks++;
+	}
+
+	/**
+	 * Drops a stopped task which was waiting on the wheel.
+	 */
+	private static void remove(Task task) {
+		activeTasks--;
+		unindex(task);
+	}
+
+	/**
+	 * Removes a task from the key index.
+	 */
+	private static void unindex(Task task) {
+		Set<Task> tasks = tasksByKey.get(task.getKey());
+		if (tasks != null && tasks.remove(task) && tasks.isEmpty()) {
+			tasksByKey.remove(task.getKey());
+		}
 	}
 }
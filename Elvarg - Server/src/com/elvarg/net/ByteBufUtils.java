@@ -36,6 +36,20 @@ public final class ByteBufUtils {
 		return (buffer.getShort() & 0xFFFF) << 8 | buffer.get() & 0xFF;
 	}
 
+	/**
+	 * Gets a 24-bit medium integer at an absolute index of the specified
+	 * {@link ByteBuffer}, without changing its position.
+	 * 
+	 * @param buffer
+	 *            The ByteBuffer to read from.
+	 * @param index
+	 *            The index to read at.
+	 * @return The read 24-bit medium integer.
+	 */
+	public static int getMedium(ByteBuffer buffer, int index) {
+		return (buffer.getShort(index) & 0xFFFF) << 8 | buffer.get(index + 2) & 0xFF;
+	}
+
 	/**
 	 * Gets a null-terminated String from the specified ByteBuffer.
 	 * 
@@ -88,4 +88,64 @@ public class NetworkConstants {
 	 */
 	public static final int PACKET_PROCESS_LIMIT = 25;
 
+	/**
+	 * Should the native epoll transport be used when it is available?
+	 */
+	public static final boolean PREFER_NATIVE_TRANSPORT = true;
+
+	/**
+	 * The maximum amount of pending connections on the game port.
+	 */
+	public static final int SERVER_BACKLOG = 128;
+
+	/**
+	 * The amount of bytes waiting to be written below which a channel becomes
+	 * writable again.
+	 */
+	public static final int WRITE_BUFFER_LOW_WATER_MARK = 32 * 1024;
+
+	/**
+	 * The amount of bytes waiting to be written above which a channel is no
+	 * longer writable.
+	 */
+	public static final int WRITE_BUFFER_HIGH_WATER_MARK = 128 * 1024;
+
+	/**
+	 * Should packets be flushed only once, at the end of each game cycle,
+	 * rather than whenever one is sent with a flush?
+	 */
+	public static final boolean FLUSH_ONCE_PER_CYCLE = true;
+
+	/**
+	 * The amount of threads which decrypt and evaluate logins.
+	 */
+	public static final int LOGIN_THREADS = 4;
+
+	/**
+	 * The maximum amount of logins which may wait to be processed before new
+	 * ones are told to retry.
+	 */
+	public static final int LOGIN_QUEUE_CAPACITY = 128;
+
+	/**
+	 * Should file server requests be run on demand by the elastic request
+	 * executor, instead of by a fixed set of worker threads per request type?
+	 */
+	public static final boolean ELASTIC_REQUEST_DISPATCH = true;
+
+	/**
+	 * The maximum amount of 'on-demand' requests serviced at once.
+	 */
+	public static final int ONDEMAND_CONCURRENCY = 8;
+
+	/**
+	 * The maximum amount of JAGGRAB requests serviced at once.
+	 */
+	public static final int JAGGRAB_CONCURRENCY = 4;
+
+	/**
+	 * The maximum amount of HTTP requests serviced at once.
+	 */
+	public static final int HTTP_CONCURRENCY = 4;
+
 }
@@ -0,0 +1,64 @@
+package com.elvarg.net;
+
+import com.elvarg.Elvarg;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+
+/**
+ * Selects the transport the game port is bound with. The native epoll
+ * transport is used when it is enabled and available on this platform,
+ * otherwise the NIO transport is used.
+ */
+public final class NetworkTransport {
+
+	/**
+	 * Is the native epoll transport used?
+	 */
+	private static final boolean EPOLL = NetworkConstants.PREFER_NATIVE_TRANSPORT && Epoll.isAvailable();
+
+	/**
+	 * Creates the event loop group for the selected transport.
+	 *
+	 * @return the event loop group.
+	 */
+	public static EventLoopGroup newEventLoopGroup() {
+		return EPOLL ? new EpollEventLoopGroup() : new NioEventLoopGroup();
+	}
+
+	/**
+	 * Gets the server channel type of the selected transport.
+	 */
+	public static Class<? extends ServerChannel> getServerChannel() {
+		return EPOLL ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+	}
+
+	/**
+	 * Creates a bootstrap for the selected transport, with the channel options
+	 * of the game port.
+	 *
+	 * @param group
+	 *            the event loop group, created by {@link #newEventLoopGroup()}.
+	 * @return the bootstrap.
+	 */
+	public static ServerBootstrap newBootstrap(EventLoopGroup group) {
+		Elvarg.getLogger().info("Using the " + (EPOLL ? "epoll" : "NIO") + " transport.");
+		return new ServerBootstrap().group(group).channel(getServerChannel())
+				.option(ChannelOption.SO_BACKLOG, NetworkConstants.SERVER_BACKLOG)
+				.option(ChannelOption.SO_REUSEADDR, true)
+				.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+				.childOption(ChannelOption.TCP_NODELAY, true)
+				.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+				.childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+						NetworkConstants.WRITE_BUFFER_LOW_WATER_MARK, NetworkConstants.WRITE_BUFFER_HIGH_WATER_MARK));
+	}
+}
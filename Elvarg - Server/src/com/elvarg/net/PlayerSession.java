@@ -1,8 +1,8 @@
 package com.elvarg.net;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
 
+import com.elvarg.engine.Profiler;
 import com.elvarg.net.codec.PacketDecoder;
 import com.elvarg.net.codec.PacketEncoder;
 import com.elvarg.net.login.LoginDetailsMessage;
@@ -12,6 +12,7 @@ import com.elvarg.net.packet.Packet;
 import com.elvarg.net.packet.PacketBuilder;
 import com.elvarg.net.packet.PacketConstants;
 import com.elvarg.util.Misc;
+import com.elvarg.util.SpscRingBuffer;
 import com.elvarg.world.World;
 import com.elvarg.world.entity.impl.player.Player;
 
@@ -31,14 +32,18 @@ public class PlayerSession {
 
 	/**
 	 * The queue which contains PRIORITIZED packets that will be handled on the
-	 * next sequence.
+	 * next sequence. Only offered to by the channel's event loop and only
+	 * polled by the game thread.
 	 */
-	private final Queue<Packet> prioritizedPacketsQueue = new ConcurrentLinkedQueue<>();
+	private final SpscRingBuffer<Packet> prioritizedPacketsQueue = new SpscRingBuffer<>(
+			NetworkConstants.PACKET_PROCESS_LIMIT);
 
 	/**
-	 * The queue of packets that will be handled on the next sequence.
+	 * The queue of packets that will be handled on the next sequence. Only
+	 * offered to by the channel's event loop and only polled by the game
+	 * thread.
 	 */
-	private final Queue<Packet> packetsQueue = new ConcurrentLinkedQueue<>();
+	private final SpscRingBuffer<Packet> packetsQueue = new SpscRingBuffer<>(NetworkConstants.PACKET_PROCESS_LIMIT);
 
 	/**
 	 * The channel that will manage the connection for this player.
@@ -55,6 +60,24 @@ public class PlayerSession {
 	 */
 	private SessionState state = SessionState.LOGGING_IN;
 
+	/**
+	 * Should packets only be flushed once at the end of each game cycle? If
+	 * so, packets sent with a flush are only written, and are flushed along
+	 * with everything else by {@link #flush()}.
+	 */
+	private boolean flushOncePerCycle = NetworkConstants.FLUSH_ONCE_PER_CYCLE;
+
+	/**
+	 * Have packets been written since the channel was last flushed?
+	 */
+	private volatile boolean unflushed;
+
+	/**
+	 * Has the session been closed? Packets decoded after it has been closed
+	 * are released instead of queued.
+	 */
+	private volatile boolean closed;
+
 	/**
 	 * Creates a new {@link PlayerSession}.
 	 *
@@ -69,7 +92,8 @@ public class PlayerSession {
 	}
 
 	/**
-	 * Attempts to finalize a player's login.
+	 * Attempts to finalize a player's login. Executed on a login thread, see
+	 * {@link com.elvarg.net.login.LoginService}.
 	 * 
 	 * @param msg
 	 *            The player's login information.
@@ -94,18 +118,24 @@ public class PlayerSession {
 			return;
 		}
 
-		// Wait...
-		future.awaitUninterruptibly();
+		// Once the response has been sent, replace decoder/encoder to
+		// packets. Listeners are notified on the channel's event loop, so
+		// nothing can be decoded in between.
+		future.addListener((ChannelFutureListener) f -> {
+			if (!f.isSuccess()) {
+				f.channel().close();
+				return;
+			}
 
-		// Replace decoder/encoder to packets
-		channel.pipeline().replace("encoder", "encoder", new PacketEncoder(msg.getEncryptor()));
+			f.channel().pipeline().replace("encoder", "encoder", new PacketEncoder(msg.getEncryptor()));
 
-		channel.pipeline().replace("decoder", "decoder", new PacketDecoder(msg.getDecryptor()));
+			f.channel().pipeline().replace("decoder", "decoder", new PacketDecoder(msg.getDecryptor()));
 
-		// Queue the login
-		if (!World.getLoginQueue().contains(player)) {
-			World.getLoginQueue().add(player);
-		}
+			// Queue the login
+			if (!World.getLoginQueue().contains(player)) {
+				World.getLoginQueue().add(player);
+			}
+		});
 	}
 
 	/**
@@ -116,21 +146,32 @@ public class PlayerSession {
 	 */
 	public void queuePacket(Packet msg) {
 
+		// Has the player already logged out?
+		if (closed) {
+			msg.release();
+			return;
+		}
+
 		// Are our queues already full?
 		// A player may be packet flooding.
 		// Simply don't add more packets to the queues.
 		int total_size = (packetsQueue.size() + prioritizedPacketsQueue.size());
 		if (total_size >= NetworkConstants.PACKET_PROCESS_LIMIT) {
+			msg.release();
 			return;
 		}
 
 		// Add the packet to the queue.
 		// If it's prioritized, add it to the prioritized queue instead.
+		boolean queued;
 		if (msg.getOpcode() == PacketConstants.EQUIP_ITEM_OPCODE
 				|| msg.getOpcode() == PacketConstants.FIRST_ITEM_ACTION_OPCODE) {
-			prioritizedPacketsQueue.add(msg);
+			queued = prioritizedPacketsQueue.offer(msg);
 		} else {
-			packetsQueue.add(msg);
+			queued = packetsQueue.offer(msg);
+		}
+		if (!queued) {
+			msg.release();
 		}
 	}
 
@@ -144,31 +185,81 @@ public class PlayerSession {
 	 */
 	public void handleQueuedPackets(boolean priorityOnly) {
 
+		// The queues are drained by the event loop once the session is closed.
+		if (closed) {
+			return;
+		}
+
 		Packet msg;
 
 		int processed = 0;
 
-		while ((msg = prioritizedPacketsQueue.poll()) != null && ++processed < NetworkConstants.PACKET_PROCESS_LIMIT) {
+		while (processed < NetworkConstants.PACKET_PROCESS_LIMIT && (msg = prioritizedPacketsQueue.poll()) != null) {
 			processPacket(msg);
+			processed++;
 		}
 
 		if (priorityOnly) {
 			return;
 		}
 
-		while ((msg = packetsQueue.poll()) != null && ++processed < NetworkConstants.PACKET_PROCESS_LIMIT) {
+		while (processed < NetworkConstants.PACKET_PROCESS_LIMIT && (msg = packetsQueue.poll()) != null) {
 			processPacket(msg);
+			processed++;
+		}
+	}
+
+	/**
+	 * Closes the session and releases every packet which is still queued.
+	 * Called by the game thread when the player logs out.
+	 * <p>
+	 * The queues are drained on the channel's event loop, after any packet it
+	 * was queuing when the session was closed, since a packet offered after
+	 * the game thread had drained them would never be released. The game
+	 * thread must not poll the queues after this.
+	 */
+	public void releaseQueuedPackets() {
+		closed = true;
+		if (channel.eventLoop().inEventLoop()) {
+			drainQueuedPackets();
+			return;
+		}
+		try {
+			channel.eventLoop().execute(this::drainQueuedPackets);
+		} catch (RejectedExecutionException e) {
+			// The event loop has shut down, so nothing else will be queued.
+			drainQueuedPackets();
+		}
+	}
+
+	/**
+	 * Releases every packet which is still queued.
+	 */
+	private void drainQueuedPackets() {
+		Packet msg;
+		while ((msg = prioritizedPacketsQueue.poll()) != null) {
+			msg.release();
+		}
+		while ((msg = packetsQueue.poll()) != null) {
+			msg.release();
 		}
 	}
 
 	/**
-	 * Handles an incoming message.
+	 * Handles an incoming message, and releases it afterwards.
 	 * 
 	 * @param msg
 	 *            The message to handle.
 	 */
 	public void processPacket(Packet msg) {
-		PacketConstants.PACKETS[msg.getOpcode()].handleMessage(player, msg);
+		final int opcode = msg.getOpcode();
+		final long start = System.nanoTime();
+		try {
+			PacketConstants.PACKETS[opcode].handleMessage(player, msg);
+		} finally {
+			msg.release();
+			Profiler.recordPacket(opcode, System.nanoTime() - start);
+		}
 	}
 
 	/**
@@ -183,6 +274,7 @@ public class PlayerSession {
 
 			Packet packet = builder.toPacket();
 			channel.write(packet);
+			unflushed = true;
 
 		} catch (Exception ex) {
 			ex.printStackTrace();
@@ -190,7 +282,8 @@ public class PlayerSession {
 	}
 
 	/**
-	 * Processes a packet immediately to be sent to the client.
+	 * Processes a packet immediately to be sent to the client, or at the end
+	 * of the cycle if packets are only flushed once per cycle.
 	 *
 	 * @param builder
 	 *            the packet to send.
@@ -199,7 +292,7 @@ public class PlayerSession {
 		try {
 
 			Packet packet = builder.toPacket();
-			channel.writeAndFlush(packet);
+			writeAndFlush(packet);
 
 		} catch (Exception ex) {
 			ex.printStackTrace();
@@ -207,9 +300,50 @@ public class PlayerSession {
 	}
 
 	/**
-	 * Flushes the channel.
+	 * Sends a reusable builder's data to the client, like
+	 * {@link #writeAndFlush(PacketBuilder)}. The data is copied into a buffer
+	 * from the channel's pooled allocator, so the builder may be cleared as
+	 * soon as this returns.
+	 *
+	 * @param builder
+	 *            the reusable builder to send.
+	 */
+	public void writeAndFlushCopy(PacketBuilder builder) {
+		try {
+
+			Packet packet = builder.toPacket(channel.alloc());
+			writeAndFlush(packet);
+
+		} catch (Exception ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Writes a packet, and flushes it unless packets are only flushed once per
+	 * cycle.
+	 *
+	 * @param packet
+	 *            the packet to send.
+	 */
+	private void writeAndFlush(Packet packet) {
+		if (flushOncePerCycle) {
+			channel.write(packet);
+			unflushed = true;
+		} else {
+			channel.writeAndFlush(packet);
+		}
+	}
+
+	/**
+	 * Flushes the channel, if anything has been written since it was last
+	 * flushed. Called once at the end of each game cycle.
 	 */
 	public void flush() {
+		if (!unflushed) {
+			return;
+		}
+		unflushed = false;
 		try {
 			channel.flush();
 		} catch (Exception ex) {
@@ -245,6 +379,14 @@ public class PlayerSession {
 		this.state = state;
 	}
 
+	public boolean isFlushOncePerCycle() {
+		return flushOncePerCycle;
+	}
+
+	public void setFlushOncePerCycle(boolean flushOncePerCycle) {
+		this.flushOncePerCycle = flushOncePerCycle;
+	}
+
 	public Channel getChannel() {
 		return channel;
 	}
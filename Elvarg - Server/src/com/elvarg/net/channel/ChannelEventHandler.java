@@ -3,7 +3,6 @@ package com.elvarg.net.channel;
 import com.elvarg.net.NetworkConstants;
 import com.elvarg.net.PlayerSession;
 import com.elvarg.net.SessionState;
-import com.elvarg.net.login.LoginDetailsMessage;
 import com.elvarg.net.packet.Packet;
 import com.elvarg.world.World;
 import com.elvarg.world.entity.impl.player.Player;
@@ -34,9 +33,7 @@ public final class ChannelEventHandler extends SimpleChannelInboundHandler<Objec
 				throw new IllegalStateException("session == null");
 			}
 
-			if (msg instanceof LoginDetailsMessage) {
-				session.finalizeLogin((LoginDetailsMessage) msg);
-			} else if (msg instanceof Packet) {
+			if (msg instanceof Packet) {
 				session.queuePacket((Packet) msg);
 			}
 
@@ -8,8 +8,10 @@ import java.util.Random;
 import com.elvarg.Elvarg;
 import com.elvarg.net.ByteBufUtils;
 import com.elvarg.net.NetworkConstants;
+import com.elvarg.net.PlayerSession;
 import com.elvarg.net.login.LoginDetailsMessage;
 import com.elvarg.net.login.LoginResponses;
+import com.elvarg.net.login.LoginService;
 import com.elvarg.net.login.LoginUtils;
 import com.elvarg.net.security.IsaacRandom;
 import com.elvarg.util.Misc;
@@ -55,7 +57,10 @@ public final class LoginDecoder extends ByteToMessageDecoder {
 			break;
 
 		case LOGIN:
-			decodeLogin(ctx, buffer, out);
+			decodeLogin(ctx, buffer);
+			break;
+
+		case LOGIN_PENDING:
 			break;
 		}
 	}
@@ -102,7 +107,7 @@ public final class LoginDecoder extends ByteToMessageDecoder {
 		state = LoginDecoderState.LOGIN;
 	}
 
-	private void decodeLogin(ChannelHandlerContext ctx, ByteBuf buffer, List<Object> out) {
+	private void decodeLogin(ChannelHandlerContext ctx, ByteBuf buffer) {
 
 		if (!buffer.isReadable()) {
 			ctx.channel().close();
@@ -150,42 +155,62 @@ public final class LoginDecoder extends ByteToMessageDecoder {
 			byte[] rsaBytes = new byte[length];
 			buffer.readBytes(rsaBytes);
 
-			ByteBuf rsaBuffer = Unpooled.wrappedBuffer(new BigInteger(rsaBytes)
-					.modPow(NetworkConstants.RSA_EXPONENT, NetworkConstants.RSA_MODULUS).toByteArray());
+			// Decrypting and evaluating the login is expensive, so it is done
+			// on a login thread rather than on this event loop. Anything the
+			// client sends in the meantime is left for the packet decoder.
+			state = LoginDecoderState.LOGIN_PENDING;
+			LoginService.submit(ctx, () -> decodeCredentials(ctx, rsaBytes, clientVersion));
+		}
+	}
 
-			int securityId = rsaBuffer.readByte();
-			if (securityId != 10) {
-				Elvarg.getLogger().info(String.format("[host= %s] was rejected for having the wrong securityId.",
-						ctx.channel().remoteAddress()));
-				LoginUtils.sendResponseCode(ctx, LoginResponses.LOGIN_REJECT_SESSION);
-				return;
-			}
+	/**
+	 * Decrypts the RSA block of a login and finalizes the login. Executed on
+	 * a login thread.
+	 *
+	 * @param ctx
+	 *            the context of the channel logging in.
+	 * @param rsaBytes
+	 *            the encrypted RSA block.
+	 * @param clientVersion
+	 *            the client's version.
+	 */
+	private static void decodeCredentials(ChannelHandlerContext ctx, byte[] rsaBytes, int clientVersion) {
+		ByteBuf rsaBuffer = Unpooled.wrappedBuffer(new BigInteger(rsaBytes)
+				.modPow(NetworkConstants.RSA_EXPONENT, NetworkConstants.RSA_MODULUS).toByteArray());
 
-			long clientSeed = rsaBuffer.readLong();
-			long seedReceived = rsaBuffer.readLong();
+		int securityId = rsaBuffer.readByte();
+		if (securityId != 10) {
+			Elvarg.getLogger().info(String.format("[host= %s] was rejected for having the wrong securityId.",
+					ctx.channel().remoteAddress()));
+			LoginUtils.sendResponseCode(ctx, LoginResponses.LOGIN_REJECT_SESSION);
+			return;
+		}
 
-			int[] seed = { (int) (clientSeed >> 32), (int) clientSeed, (int) (seedReceived >> 32), (int) seedReceived };
-			IsaacRandom decodingRandom = new IsaacRandom(seed);
-			for (int i = 0; i < seed.length; i++) {
-				seed[i] += 50;
-			}
+		long clientSeed = rsaBuffer.readLong();
+		long seedReceived = rsaBuffer.readLong();
 
-			int uid = rsaBuffer.readInt();
+		int[] seed = { (int) (clientSeed >> 32), (int) clientSeed, (int) (seedReceived >> 32), (int) seedReceived };
+		IsaacRandom decodingRandom = new IsaacRandom(seed);
+		for (int i = 0; i < seed.length; i++) {
+			seed[i] += 50;
+		}
 
-			String username = Misc.formatText(ByteBufUtils.readString(rsaBuffer).toLowerCase());
-			String password = ByteBufUtils.readString(rsaBuffer);
+		int uid = rsaBuffer.readInt();
 
-			if (username.length() > 12 || password.length() > 20) {
-				LoginUtils.sendResponseCode(ctx, LoginResponses.INVALID_CREDENTIALS);
-				return;
-			}
+		String username = Misc.formatText(ByteBufUtils.readString(rsaBuffer).toLowerCase());
+		String password = ByteBufUtils.readString(rsaBuffer);
 
-			out.add(new LoginDetailsMessage(ctx, username, password, ByteBufUtils.getHost(ctx.channel()), clientVersion,
-					uid, new IsaacRandom(seed), decodingRandom));
+		if (username.length() > 12 || password.length() > 20) {
+			LoginUtils.sendResponseCode(ctx, LoginResponses.INVALID_CREDENTIALS);
+			return;
 		}
+
+		PlayerSession session = ctx.channel().attr(NetworkConstants.SESSION_KEY).get();
+		session.finalizeLogin(new LoginDetailsMessage(ctx, username, password, ByteBufUtils.getHost(ctx.channel()),
+				clientVersion, uid, new IsaacRandom(seed), decodingRandom));
 	}
 
 	private enum LoginDecoderState {
-		LOGIN_REQUEST, LOGIN_TYPE, LOGIN;
+		LOGIN_REQUEST, LOGIN_TYPE, LOGIN, LOGIN_PENDING;
 	}
 }
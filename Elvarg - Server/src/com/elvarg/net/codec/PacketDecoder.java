@@ -10,7 +10,9 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
 
 /**
- * Decodes packets that are received from the player's channel.
+ * Decodes packets that are received from the player's channel. Decoded
+ * packets are recycled and share the received buffer instead of copying it,
+ * so they must be released once they have been handled.
  * 
  * @author Swiffy
  */
@@ -49,7 +51,7 @@ public final class PacketDecoder extends ByteToMessageDecoder {
 		if (opcode != -1) {
 			if (buffer.isReadable(size)) {
 				try {
-					out.add(new Packet(opcode, buffer.readBytes(size)));
+					out.add(Packet.get(opcode, buffer.readRetainedSlice(size)));
 				} finally {
 					opcode = -1;
 					size = 0;
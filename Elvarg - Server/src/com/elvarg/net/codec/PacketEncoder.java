@@ -36,9 +36,13 @@ public class PacketEncoder extends MessageToByteEncoder<Packet> {
 		final int size = packet.getSize();
 		final ByteBuf buf = packet.getBuffer();
 
-		out.writeByte(opcode);
-		out.writeShort(size);
-		out.writeBytes(buf);
+		try {
+			out.writeByte(opcode);
+			out.writeShort(size);
+			out.writeBytes(buf);
+		} finally {
+			buf.release();
+		}
 
 	}
 
@@ -0,0 +1,118 @@
+package com.elvarg.net.login;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.elvarg.net.NetworkConstants;
+import com.elvarg.util.LatencyHistogram;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.netty.channel.ChannelHandlerContext;
+
+/**
+ * Executes the expensive parts of the login protocol, RSA decryption and
+ * evaluating the login (which loads the character file), on a small pool of
+ * login threads instead of the network threads. A burst of logins therefore
+ * no longer stalls packet decoding for every player sharing an event loop.
+ * <p>
+ * The amount of logins waiting to be processed is bounded. Once the queue is
+ * full, new logins are told to retry after a short delay.
+ */
+public final class LoginService {
+
+	/**
+	 * The pool which executes the logins.
+	 */
+	private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(NetworkConstants.LOGIN_THREADS,
+			NetworkConstants.LOGIN_THREADS, 0, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(NetworkConstants.LOGIN_QUEUE_CAPACITY),
+			new ThreadFactoryBuilder().setNameFormat("LoginThread-%d").setDaemon(true).build());
+
+	/**
+	 * The time logins spent waiting in the queue.
+	 */
+	private static final LatencyHistogram queueTimes = new LatencyHistogram();
+
+	/**
+	 * The time logins took from being queued until their response was sent.
+	 */
+	private static final LatencyHistogram latencies = new LatencyHistogram();
+
+	/**
+	 * The amount of logins which were turned away because the queue was
+	 * full.
+	 */
+	private static final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * Queues a login to be processed on a login thread.
+	 *
+	 * @param ctx
+	 *            the context of the channel logging in.
+	 * @param login
+	 *            the login's work.
+	 */
+	public static void submit(ChannelHandlerContext ctx, Runnable login) {
+		final long queued = System.nanoTime();
+		try {
+			executor.execute(() -> {
+				queueTimes.record(System.nanoTime() - queued);
+				try {
+					if (ctx.channel().isActive()) {
+						login.run();
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+					ctx.channel().close();
+				} finally {
+					latencies.record(System.nanoTime() - queued);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejected.incrementAndGet();
+			LoginUtils.sendResponseCode(ctx, LoginResponses.LOGIN_DELAY);
+		}
+	}
+
+	/**
+	 * Gets the amount of logins waiting to be processed.
+	 */
+	public static int getQueueSize() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * Gets the amount of logins being processed right now.
+	 */
+	public static int getActiveCount() {
+		return executor.getActiveCount();
+	}
+
+	/**
+	 * Gets the amount of logins which were turned away because the queue was
+	 * full.
+	 */
+	public static long getRejectedCount() {
+		return rejected.get();
+	}
+
+	/**
+	 * Describes the state of the login queue in a single line.
+	 */
+	public static String summary() {
+		return "queued=" + getQueueSize() + " active=" + getActiveCount() + " rejected=" + getRejectedCount()
+				+ " wait p99=" + queueTimes.getPercentile(99) + "us latency " + latencies.summary();
+	}
+
+	/**
+	 * Clears the recorded login timings.
+	 */
+	public static void reset() {
+		queueTimes.reset();
+		latencies.reset();
+		rejected.set(0);
+	}
+}
@@ -1,6 +1,8 @@
 package com.elvarg.net.packet;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.util.Recycler;
+import io.netty.util.Recycler.Handle;
 
 /**
  * Manages reading packet information from the netty's channel.
@@ -10,6 +12,17 @@ import io.netty.buffer.ByteBuf;
 
 public class Packet {
 
+	/**
+	 * Recycles the packets decoded from clients, so decoding a packet does
+	 * not allocate a new instance.
+	 */
+	private static final Recycler<Packet> RECYCLER = new Recycler<Packet>() {
+		@Override
+		protected Packet newObject(Handle<Packet> handle) {
+			return new Packet(handle);
+		}
+	};
+
 	/**
 	 * The Packet constructor.
 	 * 
@@ -24,12 +37,60 @@ public class Packet {
 	public Packet(int opcode, ByteBuf buffer) {
 		this.opcode = opcode;
 		this.buffer = buffer;
+		this.handle = null;
+	}
+
+	/**
+	 * Creates a recyclable packet.
+	 */
+	private Packet(Handle<Packet> handle) {
+		this.handle = handle;
 	}
 
+	/**
+	 * Gets a recycled packet, or creates a new one if none are available. The
+	 * packet must be {@link #release()}d once it has been handled.
+	 * 
+	 * @param opcode
+	 *            The packet id.
+	 * @param buffer
+	 *            The buffer used to receive information from the netty's
+	 *            channel.
+	 * @return The packet.
+	 */
+	public static Packet get(int opcode, ByteBuf buffer) {
+		Packet packet = RECYCLER.get();
+		packet.opcode = opcode;
+		packet.buffer = buffer;
+		return packet;
+	}
+
+	/**
+	 * Releases this packet's buffer, and recycles this packet if it was
+	 * obtained through {@link #get(int, ByteBuf)}. The packet must not be
+	 * used afterwards.
+	 */
+	public void release() {
+		if (buffer != null) {
+			buffer.release();
+			buffer = null;
+		}
+		if (handle != null) {
+			opcode = -1;
+			handle.recycle(this);
+		}
+	}
+
+	/**
+	 * The handle used to recycle this packet, or {@code null} if it is not
+	 * recycled.
+	 */
+	private final Handle<Packet> handle;
+
 	/**
 	 * The packet id being received.
 	 */
-	private final int opcode;
+	private int opcode;
 
 	/**
 	 * Gets the packet id.
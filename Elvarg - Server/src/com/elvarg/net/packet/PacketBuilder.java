@@ -3,7 +3,8 @@ package com.elvarg.net.packet;
 import com.elvarg.world.model.ChatMessage.Message;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
 
 /**
  * The {@link Message} implementation that functions as a dynamic buffer wrapper
@@ -28,7 +29,20 @@ public final class PacketBuilder {
 	 *            The packet id to write information for.
 	 */
 	public PacketBuilder(int opcode) {
+		this(opcode, UnpooledByteBufAllocator.DEFAULT);
+	}
+
+	/**
+	 * The PacketBuilder constructor.
+	 * 
+	 * @param opcode
+	 *            The packet id to write information for.
+	 * @param allocator
+	 *            The allocator the backing heap buffer is taken from.
+	 */
+	public PacketBuilder(int opcode, ByteBufAllocator allocator) {
 		this.opcode = opcode;
+		this.buffer = allocator.heapBuffer(DEFAULT_CAPACITY);
 	}
 
 	/**
@@ -56,7 +70,19 @@ public final class PacketBuilder {
 	/**
 	 * The buffer used to write the packet information.
 	 */
-	private ByteBuf buffer = Unpooled.buffer(DEFAULT_CAPACITY);
+	private final ByteBuf buffer;
+
+	/**
+	 * Clears this builder so that it can be reused for a new packet. The
+	 * backing buffer keeps its current capacity.
+	 * 
+	 * @return The PacketBuilder instance.
+	 */
+	public PacketBuilder clear() {
+		buffer.clear();
+		bitPosition = 0;
+		return this;
+	}
 
 	/**
 	 * Writes the bytes from the argued buffer into this buffer. This method
@@ -86,6 +112,23 @@ public final class PacketBuilder {
 		return this;
 	}
 
+	/**
+	 * Writes a region of {@code buffer}'s bytes onto this PacketBuilder's
+	 * buffer, without modifying {@code buffer}'s reader index.
+	 * 
+	 * @param buffer
+	 *            The buffer to take values from.
+	 * @param index
+	 *            The first index to take values from.
+	 * @param length
+	 *            The amount of bytes to take.
+	 * @return The PacketBuilder instance.
+	 */
+	public PacketBuilder writeBuffer(ByteBuf buffer, int index, int length) {
+		this.buffer.writeBytes(buffer, index, length);
+		return this;
+	}
+
 	/**
 	 * Writes the bytes from the argued buffer into this buffer.
 	 *
@@ -143,7 +186,7 @@ public final class PacketBuilder {
 
 		final byte[] buffer = this.buffer.array();
 
-		int bytePos = bitPosition >> 3;
+		int bytePos = this.buffer.arrayOffset() + (bitPosition >> 3);
 		int bitOffset = 8 - (bitPosition & 7);
 		bitPosition += numBits;
 
@@ -525,6 +568,20 @@ public final class PacketBuilder {
 		return new Packet(opcode, buffer);
 	}
 
+	/**
+	 * Creates a packet holding a copy of this builder's data, leaving this
+	 * builder free to be cleared and reused straight away.
+	 * 
+	 * @param allocator
+	 *            The allocator the copied buffer is taken from.
+	 * @return The packet.
+	 */
+	public Packet toPacket(ByteBufAllocator allocator) {
+		ByteBuf copy = allocator.buffer(buffer.readableBytes());
+		copy.writeBytes(buffer, buffer.readerIndex(), buffer.readableBytes());
+		return new Packet(opcode, copy);
+	}
+
 	/**
 	 * Represents an access packetType the packet can have.
 	 * 
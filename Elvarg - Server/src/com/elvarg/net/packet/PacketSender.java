@@ -1,11 +1,15 @@
 package com.elvarg.net.packet;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.elvarg.GameConstants;
 import com.elvarg.world.entity.Entity;
 import com.elvarg.world.entity.impl.object.GameObject;
 import com.elvarg.world.entity.impl.player.Player;
+import com.elvarg.world.grounditems.GroundItemUpdate;
 import com.elvarg.world.model.Animation;
 import com.elvarg.world.model.EffectTimer;
 import com.elvarg.world.model.Graphic;
@@ -512,27 +516,132 @@ public class PacketSender {
 		return this;
 	}
 
+	/**
+	 * Queues an item container to be sent to an interface at the end of the
+	 * cycle. However often it is queued during a cycle, it is only sent once,
+	 * as it is at the end of the cycle.
+	 * 
+	 * @param container
+	 *            The container to send.
+	 * @param interfaceId
+	 *            The interface to send it to.
+	 * @return The PacketSender instance.
+	 */
 	public PacketSender sendItemContainer(ItemContainer container, int interfaceId) {
+		queuedContainers.put(interfaceId, container);
+		return this;
+	}
+
+	/**
+	 * Sends the item containers queued during this cycle. Only the slots
+	 * which changed since an interface was last sent are sent, unless sending
+	 * the whole container is smaller.
+	 */
+	public void sendQueuedItemContainers() {
+		if (queuedContainers.isEmpty()) {
+			return;
+		}
+		for (Map.Entry<Integer, ItemContainer> queued : queuedContainers.entrySet()) {
+			writeItemContainer(queued.getValue(), queued.getKey());
+		}
+		queuedContainers.clear();
+	}
+
+	/**
+	 * Makes the next item container sent to an interface be sent whole,
+	 * because the client has changed the interface's items by itself, such as
+	 * when an item is dragged onto another slot.
+	 * 
+	 * @param interfaceId
+	 *            The interface which changed.
+	 * @return The PacketSender instance.
+	 */
+	public PacketSender resendItemContainer(int interfaceId) {
+		sentContainers.remove(interfaceId);
+		return this;
+	}
+
+	/**
+	 * Writes an item container to an interface, either whole or as the slots
+	 * which changed since it was last written.
+	 */
+	private void writeItemContainer(ItemContainer container, int interfaceId) {
+		Item[] items = container.getItems();
+		int[] contents = new int[items.length * 2];
+		int fullSize = 9;
+		for (int slot = 0; slot < items.length; slot++) {
+			Item item = items[slot];
+			if (item == null || item.getAmount() <= 0) {
+				fullSize += 4;
+				continue;
+			}
+			contents[slot * 2] = item.getId() + 1;
+			contents[slot * 2 + 1] = item.getAmount();
+			fullSize += 6;
+		}
+
+		int[] sent = sentContainers.put(interfaceId, contents);
+		if (sent != null && sent.length == contents.length && interfaceId <= 0xFFFF) {
+			int changed = 0;
+			boolean partial = true;
+			for (int slot = 0; slot < items.length; slot++) {
+				if (sent[slot * 2] != contents[slot * 2] || sent[slot * 2 + 1] != contents[slot * 2 + 1]) {
+					changed++;
+					// The slot of a single item update is only a byte.
+					partial &= slot <= 0xFF;
+				}
+			}
+			if (changed == 0) {
+				return;
+			}
+			if (partial && changed * SLOT_UPDATE_SIZE < fullSize) {
+				for (int slot = 0; slot < items.length; slot++) {
+					if (sent[slot * 2] != contents[slot * 2] || sent[slot * 2 + 1] != contents[slot * 2 + 1]) {
+						PacketBuilder out = new PacketBuilder(34);
+						out.putShort(interfaceId);
+						out.put(slot);
+						out.putInt(contents[slot * 2 + 1]);
+						out.putShort(contents[slot * 2]);
+						player.getSession().write(out);
+					}
+				}
+				return;
+			}
+		}
 
 		PacketBuilder out = new PacketBuilder(53);
 
 		out.putInt(interfaceId);
-		out.putShort(container.capacity());
+		out.putShort(items.length);
 
-		for (Item item : container.getItems()) {
-			if (item == null || item.getAmount() <= 0) {
+		for (int slot = 0; slot < items.length; slot++) {
+			if (contents[slot * 2] == 0) {
 				out.putInt(0);
 				continue;
 			}
-			out.putInt(item.getAmount());
-			out.putShort(item.getId() + 1);
+			out.putInt(contents[slot * 2 + 1]);
+			out.putShort(contents[slot * 2]);
 		}
 
 		player.getSession().write(out);
-		return this;
+	}
+
+	/**
+	 * Called before an interface's items are changed by anything other than
+	 * {@link #sendItemContainer}. A container queued for the interface is
+	 * written first, so the packets still reach the client in the order they
+	 * were sent in, and the next container is sent whole.
+	 */
+	private void overwriteItemContainer(int interfaceId) {
+		ItemContainer queued = queuedContainers.remove(interfaceId);
+		if (queued != null) {
+			writeItemContainer(queued, interfaceId);
+		}
+		sentContainers.remove(interfaceId);
 	}
 
 	public PacketSender sendShopItemContainer(ItemContainer container, int interfaceId) {
+		overwriteItemContainer(interfaceId);
 
 		PacketBuilder out = new PacketBuilder(53);
 
@@ -573,6 +682,7 @@ public class PacketSender {
 	}
 
 	public PacketSender sendInterfaceItems(int interfaceId, List<Item> items) {
+		overwriteItemContainer(interfaceId);
 		PacketBuilder out = new PacketBuilder(53);
 		out.putInt(interfaceId);
 		out.putShort(items.size());
@@ -590,6 +700,7 @@ public class PacketSender {
 	}
 
 	public PacketSender sendItemOnInterface(int interfaceId, int item, int amount) {
+		overwriteItemContainer(interfaceId);
 		PacketBuilder out = new PacketBuilder(53);
 		out.putShort(interfaceId);
 		out.putShort(1);
@@ -600,6 +711,7 @@ public class PacketSender {
 	}
 
 	public PacketSender sendItemOnInterface(int frame, int item, int slot, int amount) {
+		overwriteItemContainer(frame);
 		PacketBuilder out = new PacketBuilder(34);
 		out.putShort(frame);
 		out.put(slot);
@@ -610,6 +722,7 @@ public class PacketSender {
 	}
 
 	public PacketSender clearItemOnInterface(int frame) {
+		overwriteItemContainer(frame);
 		PacketBuilder out = new PacketBuilder(72);
 		out.putShort(frame);
 		player.getSession().write(out);
@@ -617,6 +730,7 @@ public class PacketSender {
 	}
 
 	public PacketSender sendDuelEquipment() {
+		overwriteItemContainer(13824);
 		for (int i = 0; i < player.getEquipment().getItems().length; i++) {
 			PacketBuilder out = new PacketBuilder(34);
 			out.putShort(13824);
@@ -630,6 +744,7 @@ public class PacketSender {
 	}
 
 	public PacketSender sendSmithingData(int id, int slot, int column, int amount) {
+		overwriteItemContainer(column);
 		PacketBuilder out = new PacketBuilder(34);
 		out.putShort(column);
 		out.put(4);
@@ -915,6 +1030,47 @@ public class PacketSender {
 		return this;
 	}
 
+	/**
+	 * Sends every change to the ground items of a single chunk in one
+	 * packet.
+	 * 
+	 * @param chunkX
+	 *            The absolute x coordinate of the chunk's first tile.
+	 * @param chunkY
+	 *            The absolute y coordinate of the chunk's first tile.
+	 * @param updates
+	 *            The changes, all in the given chunk.
+	 * @return The PacketSender instance.
+	 */
+	public PacketSender sendGroundItemUpdates(int chunkX, int chunkY, List<GroundItemUpdate> updates) {
+		final Position other = player.getLastKnownRegion();
+		PacketBuilder out = new PacketBuilder(60);
+		out.put(chunkY - 8 * other.getRegionY());
+		out.put(chunkX - 8 * other.getRegionX(), ValueType.C);
+		for (GroundItemUpdate update : updates) {
+			final int offset = (update.getX() & 7) << 4 | (update.getY() & 7);
+			switch (update.getType()) {
+			case SPAWN:
+				out.put(44);
+				out.putShort(update.getId(), ValueType.A, ByteOrder.LITTLE);
+				out.putShort(update.getAmount()).put(offset);
+				break;
+			case REMOVE:
+				out.put(156);
+				out.put(offset, ValueType.A);
+				out.putShort(update.getId());
+				break;
+			case AMOUNT:
+				out.put(84);
+				out.put(offset);
+				out.putShort(update.getId()).putShort(update.getPreviousAmount()).putShort(update.getAmount());
+				break;
+			}
+		}
+		player.getSession().write(out);
+		return this;
+	}
+
 	public PacketSender sendPosition(final Position position) {
 		final Position other = player.getLastKnownRegion();
 		PacketBuilder out = new PacketBuilder(85);
@@ -951,6 +1107,23 @@ public class PacketSender {
 
 	private Player player;
 
+	/**
+	 * The size of a single item update packet, including its opcode and size.
+	 */
+	private static final int SLOT_UPDATE_SIZE = 12;
+
+	/**
+	 * The item containers waiting to be sent at the end of the cycle, by the
+	 * interface they are sent to.
+	 */
+	private final Map<Integer, ItemContainer> queuedContainers = new LinkedHashMap<>();
+
+	/**
+	 * The items each interface was last sent, as the id + 1 and the amount of
+	 * every slot, by interface id.
+	 */
+	private final Map<Integer, int[]> sentContainers = new HashMap<>();
+
 	public PacketSender sendProjectile(Position position, Position offset, int angle, int speed, int gfxMoving,
 			int startHeight, int endHeight, int lockon, int time) {
 		sendPosition(position);
@@ -4,6 +4,7 @@ import com.elvarg.cache.impl.definitions.ItemDefinition;
 import com.elvarg.cache.impl.definitions.NpcDefinition;
 import com.elvarg.cache.impl.definitions.ShopDefinition;
 import com.elvarg.cache.impl.definitions.WeaponInterfaces;
+import com.elvarg.engine.Profiler;
 import com.elvarg.engine.task.Task;
 import com.elvarg.engine.task.TaskManager;
 import com.elvarg.net.packet.Packet;
@@ -67,6 +68,9 @@ public class CommandPacketListener implements PacketListener {
 					}
 				  break;
 			case ADMINISTRATOR:
+				if (parts[0].equalsIgnoreCase("perf")) {
+					perfCommand(player, parts);
+				}
 				if (parts[0].equalsIgnoreCase("bank")) {
 					player.getBank(player.getCurrentBankTab()).open();
 				}
@@ -229,6 +233,9 @@ public class CommandPacketListener implements PacketListener {
 				}
 				break;
 			case DEVELOPER:
+				if (parts[0].equalsIgnoreCase("perf")) {
+					perfCommand(player, parts);
+				}
 				if (parts[0].equalsIgnoreCase("lockxp")) {
 					player.setExperienceLocked(!player.experienceLocked());
 					player.getPacketSender().sendMessage("Lock: " + player.experienceLocked());
@@ -433,6 +440,9 @@ public class CommandPacketListener implements PacketListener {
 				}
 				break;
 			case OWNER:
+				if (parts[0].equalsIgnoreCase("perf")) {
+					perfCommand(player, parts);
+				}
 				if (parts[0].equalsIgnoreCase("lockxp")) {
 					player.setExperienceLocked(!player.experienceLocked());
 					player.getPacketSender().sendMessage("Lock: " + player.experienceLocked());
@@ -633,6 +643,24 @@ public class CommandPacketListener implements PacketListener {
 
 		}
 	}
+
+	/**
+	 * Sends the {@link Profiler}'s report to a player, or resets its timings
+	 * when used as "::perf reset".
+	 * 
+	 * @param player
+	 *            The player who used the command.
+	 * @param parts
+	 *            The parts of the command.
+	 */
+	private static void perfCommand(Player player, String[] parts) {
+		if (parts.length > 1 && parts[1].equals("reset")) {
+			Profiler.clear();
+			player.getPacketSender().sendMessage("Profiler timings have been reset.");
+		} else {
+			Profiler.report().forEach(line -> player.getPacketSender().sendMessage(line));
+		}
+	}
 	
 	public static final int OP_CODE = 103;
 }
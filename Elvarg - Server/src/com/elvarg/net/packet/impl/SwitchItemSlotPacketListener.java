@@ -23,6 +23,9 @@ public class SwitchItemSlotPacketListener implements PacketListener {
 		int fromSlot = packet.readLEShortA();
 		int toSlot = packet.readLEShort();
 
+		// The client has already moved the item on its own interface.
+		player.getPacketSender().resendItemContainer(interfaceId);
+
 		// Bank..
 		if (interfaceId >= Bank.CONTAINER_START && interfaceId < Bank.CONTAINER_START + Bank.TOTAL_BANK_TABS) {
 
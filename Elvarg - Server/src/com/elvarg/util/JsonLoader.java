@@ -3,6 +3,7 @@ package com.elvarg.util;
 import java.io.FileReader;
 import java.nio.file.Paths;
 
+import com.elvarg.cache.impl.definitions.DefinitionPack;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
@@ -42,20 +43,42 @@ public abstract class JsonLoader {
 	 *             if any exception occur while loading the parsed data.
 	 */
 	public JsonLoader load() {
+		JsonArray packed = null;
+		try {
+			packed = DefinitionPack.getJson(filePath());
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		if (packed != null) {
+			try {
+				load(packed);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+			return this;
+		}
 		try (FileReader fileReader = new FileReader(Paths.get(filePath()).toFile())) {
 			JsonParser parser = new JsonParser();
-			JsonArray array = (JsonArray) parser.parse(fileReader);
-			Gson builder = new GsonBuilder().create();
-
-			for (int i = 0; i < array.size(); i++) {
-				JsonObject reader = (JsonObject) array.get(i);
-				load(reader, builder);
-			}
-
+			load((JsonArray) parser.parse(fileReader));
 			fileReader.close();
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 		return this;
 	}
+
+	/**
+	 * Loads every entry of the parsed data.
+	 * 
+	 * @param array
+	 *            the parsed entries.
+	 */
+	private void load(JsonArray array) {
+		Gson builder = new GsonBuilder().create();
+
+		for (int i = 0; i < array.size(); i++) {
+			JsonObject reader = (JsonObject) array.get(i);
+			load(reader, builder);
+		}
+	}
 }
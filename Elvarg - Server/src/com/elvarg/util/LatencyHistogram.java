@@ -0,0 +1,168 @@
+package com.elvarg.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, lock-free histogram of latencies in the style of
+ * HdrHistogram. Values are recorded in microseconds into logarithmic buckets
+ * which are each split into {@link #SUB_BUCKETS} linear sub-buckets, giving a
+ * relative error of at most 12.5% for any value up to several days.
+ * <p>
+ * Recording never allocates, so it is cheap enough to leave enabled on the
+ * game thread at all times.
+ */
+public final class LatencyHistogram {
+
+	/**
+	 * The amount of bits used to index the linear sub-buckets.
+	 */
+	private static final int SUB_BUCKET_BITS = 3;
+
+	/**
+	 * The amount of linear sub-buckets in each logarithmic bucket.
+	 */
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * The total amount of buckets, enough to cover every positive long.
+	 */
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS + SUB_BUCKETS;
+
+	/**
+	 * The amount of values recorded into each bucket.
+	 */
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+	/**
+	 * The amount of values recorded.
+	 */
+	private final AtomicLong count = new AtomicLong();
+
+	/**
+	 * The sum of all recorded values, in microseconds.
+	 */
+	private final AtomicLong total = new AtomicLong();
+
+	/**
+	 * The highest recorded value, in microseconds.
+	 */
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a latency.
+	 *
+	 * @param nanos
+	 *            the latency, in nanoseconds.
+	 */
+	public void record(long nanos) {
+		long micros = Math.max(0, nanos / 1000);
+		counts.incrementAndGet(bucketOf(micros));
+		count.incrementAndGet();
+		total.addAndGet(micros);
+		long current;
+		while (micros > (current = max.get())) {
+			if (max.compareAndSet(current, micros)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Gets the value at the given percentile.
+	 *
+	 * @param percentile
+	 *            the percentile, between {@code 0} and {@code 100}.
+	 * @return the value, in microseconds.
+	 */
+	public long getPercentile(double percentile) {
+		long recorded = count.get();
+		if (recorded == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(recorded * (percentile / 100D)));
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+			seen += counts.get(bucket);
+			if (seen >= target) {
+				return Math.min(highestValueIn(bucket), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Gets the amount of recorded values.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Gets the sum of all recorded values, in microseconds.
+	 */
+	public long getTotal() {
+		return total.get();
+	}
+
+	/**
+	 * Gets the mean of all recorded values, in microseconds.
+	 */
+	public long getMean() {
+		long recorded = count.get();
+		return recorded == 0 ? 0 : total.get() / recorded;
+	}
+
+	/**
+	 * Gets the highest recorded value, in microseconds.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Clears all recorded values.
+	 */
+	public void reset() {
+		for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+			counts.set(bucket, 0);
+		}
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+
+	/**
+	 * Describes this histogram in a single line.
+	 */
+	public String summary() {
+		return "n=" + getCount() + " mean=" + getMean() + "us p50=" + getPercentile(50) + "us p99="
+				+ getPercentile(99) + "us max=" + getMax() + "us";
+	}
+
+	/**
+	 * Gets the bucket a value belongs in.
+	 */
+	private static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+		return (shift + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Gets the highest value which belongs in a bucket.
+	 */
+	private static long highestValueIn(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long subBucket = bucket & (SUB_BUCKETS - 1);
+		long lowest = (SUB_BUCKETS + subBucket) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
@@ -2,7 +2,11 @@ package com.elvarg.util;
 
 import java.util.logging.Logger;
 
+import com.elvarg.GameConstants;
 import com.elvarg.world.World;
+import com.elvarg.world.entity.impl.player.PlayerPersistence;
+
+import jaggrab.dispatch.OnDemandCache;
 
 public class ShutdownHook extends Thread {
 
@@ -15,6 +19,10 @@ public class ShutdownHook extends Thread {
 	public void run() {
 		logger.info("The shutdown hook is processing all required actions...");
 		World.savePlayers();
+		PlayerPersistence.shutdown();
+		if (GameConstants.JAGGRAB_ENABLED) {
+			OnDemandCache.saveStatistics();
+		}
 		logger.info("The shudown hook actions have been completed, shutting the server down...");
 	}
 }
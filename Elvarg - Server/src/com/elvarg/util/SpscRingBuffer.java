@@ -0,0 +1,107 @@
+package com.elvarg.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue for exactly one producing thread and one
+ * consuming thread, backed by a ring of slots which is allocated once.
+ * Unlike a {@link java.util.concurrent.ConcurrentLinkedQueue}, offering and
+ * polling never allocate.
+ *
+ * @param <E>
+ *            the type of element queued.
+ */
+public final class SpscRingBuffer<E> {
+
+	/**
+	 * The slots of the ring.
+	 */
+	private final AtomicReferenceArray<E> slots;
+
+	/**
+	 * The mask used to wrap a sequence into a slot index.
+	 */
+	private final int mask;
+
+	/**
+	 * The sequence of the next element to poll, only written by the consumer.
+	 */
+	private final AtomicLong head = new AtomicLong();
+
+	/**
+	 * The sequence of the next element to offer, only written by the
+	 * producer.
+	 */
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * Creates a new {@link SpscRingBuffer}.
+	 *
+	 * @param capacity
+	 *            the minimum amount of elements the ring can hold, rounded up
+	 *            to a power of two.
+	 */
+	public SpscRingBuffer(int capacity) {
+		int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		this.slots = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Adds an element to the ring. Must only be called by the producer.
+	 *
+	 * @param e
+	 *            the element to add.
+	 * @return false if the ring was full and the element was not added.
+	 */
+	public boolean offer(E e) {
+		final long t = tail.get();
+		if (t - head.get() > mask) {
+			return false;
+		}
+		slots.lazySet((int) t & mask, e);
+		tail.lazySet(t + 1);
+		return true;
+	}
+
+	/**
+	 * Removes the oldest element from the ring. Must only be called by the
+	 * consumer.
+	 *
+	 * @return the element, or {@code null} if the ring was empty.
+	 */
+	public E poll() {
+		final long h = head.get();
+		if (h == tail.get()) {
+			return null;
+		}
+		final int index = (int) h & mask;
+		E e = slots.get(index);
+		slots.lazySet(index, null);
+		head.lazySet(h + 1);
+		return e;
+	}
+
+	/**
+	 * Gets the amount of elements in the ring. Only an estimate if called
+	 * while the other thread is offering or polling.
+	 */
+	public int size() {
+		return (int) Math.max(0, tail.get() - head.get());
+	}
+
+	/**
+	 * Checks if the ring is empty.
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Gets the amount of elements the ring can hold.
+	 */
+	public int capacity() {
+		return mask + 1;
+	}
+}
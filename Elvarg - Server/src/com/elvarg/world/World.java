@@ -4,12 +4,11 @@ import java.util.Iterator;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Phaser;
 
 import com.elvarg.Elvarg;
 import com.elvarg.GameConstants;
+import com.elvarg.engine.TickPhase;
+import com.elvarg.engine.TickScheduler;
 import com.elvarg.util.Misc;
 import com.elvarg.world.content.ServerFeed;
 import com.elvarg.world.entity.impl.CharacterList;
@@ -19,8 +18,8 @@ import com.elvarg.world.entity.impl.player.Player;
 import com.elvarg.world.entity.updating.NpcUpdateSequence;
 import com.elvarg.world.entity.updating.PlayerUpdateSequence;
 import com.elvarg.world.entity.updating.UpdateSequence;
+import com.elvarg.world.grounditems.GroundItemManager;
 import com.elvarg.world.model.PlayerRights;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * @author Swiffy96 Thanks to lare96 for help with parallel updating system
@@ -33,13 +32,14 @@ public class World {
 	/** All of the registered NPCs. */
 	private static CharacterList<NPC> npcs = new CharacterList<>(2027);
 
-	/** Used to block the game thread until updating has completed. */
-	private static Phaser synchronizer = new Phaser(1);
+	/** Runs the parallel stages of each cycle and times every phase. */
+	private static final TickScheduler scheduler = new TickScheduler();
 
-	/** A thread pool that will update players in parallel. */
-	private static ExecutorService updateExecutor = Executors.newFixedThreadPool(
-			Runtime.getRuntime().availableProcessors(),
-			new ThreadFactoryBuilder().setNameFormat("UpdateThread").setPriority(Thread.MAX_PRIORITY).build());
+	/** The update sequence for players. */
+	private static final UpdateSequence<Player> playerUpdate = new PlayerUpdateSequence();
+
+	/** The update sequence for npcs. */
+	private static final UpdateSequence<NPC> npcUpdate = new NpcUpdateSequence();
 
 	/** The queue of {@link Player}s waiting to be logged in. **/
 	private static Queue<Player> logins = new ConcurrentLinkedQueue<>();
@@ -79,6 +79,15 @@ public class World {
 		return npcs;
 	}
 
+	/**
+	 * The scheduler which runs and times the world's cycles.
+	 * 
+	 * @return The tick scheduler.
+	 */
+	public static TickScheduler getTickScheduler() {
+		return scheduler;
+	}
+
 	public static Queue<Player> getLoginQueue() {
 		return logins;
 	}
@@ -132,11 +141,64 @@ public class World {
 				"@or2@Server time: @or2@[ @yel@" + Misc.getCurrentServerTime() + "@or2@ ]"));
 	}
 
+	/**
+	 * Queues every player to be saved. Only the snapshots are taken on the
+	 * calling thread, the files are written by the
+	 * {@link com.elvarg.world.entity.impl.player.PlayerPersistence} service.
+	 */
 	public static void savePlayers() {
 		players.forEach(p -> p.save());
 	}
 
 	public static void sequence() {
+		scheduler.time(TickPhase.LOGINS, World::processQueues);
+
+		// Shuffle them
+		players.shuffle();
+		npcs.shuffle();
+
+		// Then we execute pre-updating code.
+		scheduler.time(TickPhase.PRE_UPDATE, () -> {
+			players.forEach(playerUpdate::executePreUpdate);
+			npcs.forEach(npcUpdate::executePreUpdate);
+		});
+
+		// Then we execute parallelized updating code.
+		scheduler.time(TickPhase.UPDATE, () -> scheduler.forEachParallel(players, playerUpdate::executeUpdate));
+
+		// Then we execute post-updating code. Resetting flags only touches
+		// the character being reset, so this is parallelized too.
+		scheduler.time(TickPhase.POST_UPDATE, () -> {
+			scheduler.forEachParallel(players, playerUpdate::executePostUpdate);
+			scheduler.forEachParallel(npcs, npcUpdate::executePostUpdate);
+		});
+
+		scheduler.time(TickPhase.OBJECTS, () -> {
+			// Objects updating
+			ObjectHandler.process();
+
+			// Ground items updating
+			GroundItemManager.process();
+
+			// Misc updating
+			ServerFeed.updateEntries();
+		});
+
+		// Finally, send the item containers queued during this cycle and
+		// everything else written, with a single flush per player.
+		scheduler.time(TickPhase.FLUSH, () -> players.forEach(p -> {
+			p.getPacketSender().sendQueuedItemContainers();
+			p.getSession().flush();
+		}));
+
+		scheduler.completeCycle();
+	}
+
+	/**
+	 * Handles the queued logins and logouts, and registers and deregisters the
+	 * queued players and npcs.
+	 */
+	private static void processQueues() {
 
 		// Handle queued logins.
 		for (int amount = 0; amount < GameConstants.QUEUED_LOOP_THRESHOLD; amount++) {
@@ -196,35 +258,5 @@ public class World {
 				break;
 			getNpcs().remove(npc);
 		}
-
-		// Shuffle them
-		players.shuffle();
-		npcs.shuffle();
-
-		// Update them
-		// .....
-
-		// First we construct the update sequences.
-		UpdateSequence<Player> playerUpdate = new PlayerUpdateSequence(synchronizer, updateExecutor);
-		UpdateSequence<NPC> npcUpdate = new NpcUpdateSequence();
-
-		// Then we execute pre-updating code.
-		players.forEach(playerUpdate::executePreUpdate);
-		npcs.forEach(npcUpdate::executePreUpdate);
-
-		// Then we execute parallelized updating code.
-		synchronizer.bulkRegister(players.size());
-		players.forEach(playerUpdate::executeUpdate);
-		synchronizer.arriveAndAwaitAdvance();
-
-		// Then we execute post-updating code.
-		players.forEach(playerUpdate::executePostUpdate);
-		npcs.forEach(npcUpdate::executePostUpdate);
-
-		// Objects updating
-		ObjectHandler.process();
-
-		// Misc updating
-		ServerFeed.updateEntries();
 	}
 }
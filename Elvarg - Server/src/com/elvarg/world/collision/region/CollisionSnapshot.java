@@ -0,0 +1,270 @@
+package com.elvarg.world.collision.region;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import com.elvarg.Elvarg;
+import com.elvarg.cache.impl.CacheConstants;
+import com.elvarg.world.entity.impl.object.GameObject;
+import com.elvarg.world.model.Position;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * A precomputed copy of the decoded collision map, so the map files don't
+ * have to be decoded again on every startup.
+ * <p>
+ * The snapshot holds the clipping flags and map objects of every region, and
+ * is keyed by a checksum of the cache. A snapshot made for a different cache
+ * is ignored and replaced. The file is memory-mapped when read, and each
+ * plane of clipping flags is copied out with a single bulk read.
+ */
+public final class CollisionSnapshot {
+
+	/**
+	 * The file the snapshot is stored in.
+	 */
+	private static final Path FILE = Paths.get("./data/collision.snapshot");
+
+	/**
+	 * The magic number every snapshot starts with.
+	 */
+	private static final int MAGIC = 0x434C4950; // "CLIP"
+
+	/**
+	 * The version of the snapshot format.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * The size of the header: the magic number and the cache checksum.
+	 */
+	private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+
+	/**
+	 * The amount of tiles in a plane of a region.
+	 */
+	private static final int PLANE_SIZE = 64 * 64;
+
+	/**
+	 * Restores the collision map from the snapshot if there is one for the
+	 * current cache, otherwise decodes every region and writes a new snapshot.
+	 */
+	public static void loadOrCreate() {
+		final long start = System.currentTimeMillis();
+		long key;
+		try {
+			key = computeKey();
+		} catch (IOException e) {
+			Elvarg.getLogger().warning("Could not checksum the cache, decoding the maps instead: " + e);
+			RegionClipping.loadAll();
+			return;
+		}
+		try {
+			if (read(key)) {
+				RegionClipping.markAllLoaded();
+				Elvarg.getLogger().info("Restored the collision map from " + FILE + " in "
+						+ (System.currentTimeMillis() - start) + "ms.");
+				return;
+			}
+		} catch (Exception e) {
+			Elvarg.getLogger().warning("Could not read " + FILE + ", decoding the maps instead: " + e);
+			clear();
+		}
+		RegionClipping.loadAll();
+		try {
+			write(key);
+		} catch (IOException e) {
+			Elvarg.getLogger().warning("Could not write " + FILE + ": " + e);
+		}
+	}
+
+	/**
+	 * Computes the checksum the snapshot is keyed by: the cache's CRC table,
+	 * which covers the map index and object definitions, and the index of the
+	 * map files.
+	 */
+	private static long computeKey() throws IOException {
+		CRC32 crc = new CRC32();
+		ByteBuf table = Elvarg.getCache().getCrcTable();
+		byte[] bytes = new byte[table.readableBytes()];
+		table.readBytes(bytes);
+		crc.update(bytes);
+		crc.update(Files.readAllBytes(
+				Paths.get(CacheConstants.CACHE_BASE_DIR + CacheConstants.INDEX_PREFIX + CacheConstants.MAP_INDEX)));
+		return (long) VERSION << 32 | crc.getValue();
+	}
+
+	/**
+	 * Reads the snapshot into the regions.
+	 *
+	 * @param key
+	 *            the checksum of the current cache.
+	 * @return false if there is no snapshot for the current cache.
+	 */
+	private static boolean read(long key) throws IOException {
+		if (!Files.exists(FILE)) {
+			return false;
+		}
+		try (FileChannel channel = FileChannel.open(FILE, StandardOpenOption.READ)) {
+			// The header is read without mapping, so a stale snapshot isn't
+			// left mapped when it is about to be replaced.
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while (header.hasRemaining()) {
+				if (channel.read(header) < 0) {
+					return false;
+				}
+			}
+			header.flip();
+			if (header.getInt() != MAGIC || header.getLong() != key) {
+				return false;
+			}
+			MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, HEADER_SIZE, channel.size() - HEADER_SIZE);
+			int regionCount = buffer.getInt();
+			for (int i = 0; i < regionCount; i++) {
+				int regionId = buffer.getShort() & 0xFFFF;
+				RegionClipping r = RegionClipping.regions[regionId];
+				if (r == null) {
+					throw new IOException("Snapshot contains unknown region " + regionId + ".");
+				}
+
+				int planes = buffer.get();
+				for (int z = 0; z < 4; z++) {
+					if ((planes & 1 << z) == 0) {
+						continue;
+					}
+					int[] plane = new int[PLANE_SIZE];
+					IntBuffer ints = buffer.asIntBuffer();
+					ints.get(plane);
+					buffer.position(buffer.position() + PLANE_SIZE * Integer.BYTES);
+					r.clips[z] = plane;
+				}
+
+				int absX = (regionId >> 8) * 64;
+				int absY = (regionId & 0xff) * 64;
+				int objectCount = buffer.getInt();
+				for (int o = 0; o < objectCount; o++) {
+					int id = buffer.getShort() & 0xFFFF;
+					int tile = buffer.getShort() & 0xFFFF;
+					int attributes = buffer.get() & 0xFF;
+					int type = buffer.get() & 0xFF;
+					int z = attributes >> 2;
+					int x = tile >> 6;
+					int y = tile & 63;
+					if (r.gameObjects[z] == null) {
+						r.gameObjects[z] = new GameObject[64][64];
+					}
+					r.gameObjects[z][x][y] = new GameObject(id, new Position(absX + x, absY + y, z), type,
+							attributes & 0x3);
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Writes every loaded region to the snapshot. The snapshot is written to
+	 * a temporary file first, so a failed write never leaves a partial
+	 * snapshot behind.
+	 *
+	 * @param key
+	 *            the checksum of the current cache.
+	 */
+	private static void write(long key) throws IOException {
+		int regionCount = 0;
+		for (RegionClipping r : RegionClipping.regions) {
+			if (r != null && RegionClipping.isLoaded(r.getId())) {
+				regionCount++;
+			}
+		}
+
+		Path temp = FILE.resolveSibling(FILE.getFileName() + ".tmp");
+		try (OutputStream file = Files.newOutputStream(temp);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeLong(key);
+			out.writeInt(regionCount);
+			for (RegionClipping r : RegionClipping.regions) {
+				if (r == null || !RegionClipping.isLoaded(r.getId())) {
+					continue;
+				}
+				out.writeShort(r.getId());
+
+				int planes = 0;
+				for (int z = 0; z < 4; z++) {
+					if (r.clips[z] != null) {
+						planes |= 1 << z;
+					}
+				}
+				out.writeByte(planes);
+				for (int z = 0; z < 4; z++) {
+					if (r.clips[z] != null) {
+						for (int flags : r.clips[z]) {
+							out.writeInt(flags);
+						}
+					}
+				}
+
+				int objectCount = 0;
+				for (int z = 0; z < 4; z++) {
+					if (r.gameObjects[z] == null) {
+						continue;
+					}
+					for (int x = 0; x < 64; x++) {
+						for (int y = 0; y < 64; y++) {
+							if (r.gameObjects[z][x][y] != null) {
+								objectCount++;
+							}
+						}
+					}
+				}
+				out.writeInt(objectCount);
+				for (int z = 0; z < 4; z++) {
+					if (r.gameObjects[z] == null) {
+						continue;
+					}
+					for (int x = 0; x < 64; x++) {
+						for (int y = 0; y < 64; y++) {
+							GameObject object = r.gameObjects[z][x][y];
+							if (object != null) {
+								out.writeShort(object.getId());
+								out.writeShort(x << 6 | y);
+								out.writeByte(z << 2 | (object.getFace() & 0x3));
+								out.writeByte(object.getType());
+							}
+						}
+					}
+				}
+			}
+		}
+		Files.move(temp, FILE, StandardCopyOption.REPLACE_EXISTING);
+		Elvarg.getLogger().info("Wrote the collision map to " + FILE + ".");
+	}
+
+	/**
+	 * Forgets any clipping partially restored from a broken snapshot.
+	 */
+	private static void clear() {
+		for (RegionClipping r : RegionClipping.regions) {
+			if (r != null) {
+				for (int z = 0; z < 4; z++) {
+					r.clips[z] = null;
+					r.gameObjects[z] = null;
+				}
+			}
+		}
+	}
+}
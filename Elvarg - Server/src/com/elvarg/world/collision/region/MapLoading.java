@@ -0,0 +1,24 @@
+package com.elvarg.world.collision.region;
+
+/**
+ * The ways the collision map can be loaded on startup.
+ */
+public enum MapLoading {
+
+	/**
+	 * Regions are decoded the first time something touches them.
+	 */
+	LAZY,
+
+	/**
+	 * Every region is decoded in parallel on startup.
+	 */
+	EAGER,
+
+	/**
+	 * The collision map is read from a {@link CollisionSnapshot} made for the
+	 * current cache. If there is none, every region is decoded in parallel
+	 * and a new snapshot is written for the next startup.
+	 */
+	SNAPSHOT;
+}
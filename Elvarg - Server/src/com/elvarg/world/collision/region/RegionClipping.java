@@ -1,8 +1,15 @@
 package com.elvarg.world.collision.region;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 import com.elvarg.Elvarg;
+import com.elvarg.GameConstants;
 import com.elvarg.cache.impl.CacheArchive;
 import com.elvarg.cache.impl.CacheConstants;
 import com.elvarg.cache.impl.definitions.ObjectDefinition;
@@ -17,11 +24,27 @@ import com.elvarg.world.model.Position;
  * @author Relex lawl and Palidino: Gave me (Gabbe/Swiffy96) the base.
  * @editor Swiffy96: Rewrote the system, now loads regions when they're actually
  *         needed etc.
+ *         <p>
+ *         Regions are stored in an array indexed directly by region id, and
+ *         each plane's clipping is a single flat array, so looking up the
+ *         clipping of a tile is a couple of array reads.
  */
 public final class RegionClipping {
 
-	private static RegionClipping[] regionArray;
-	private static final ArrayList<Integer> loadedRegions = new ArrayList<Integer>();
+	/**
+	 * The amount of possible region ids.
+	 */
+	private static final int REGION_COUNT = 1 << 16;
+
+	/**
+	 * Every region in the map index, indexed directly by region id.
+	 */
+	static final RegionClipping[] regions = new RegionClipping[REGION_COUNT];
+
+	/**
+	 * The ids of the regions whose map files have been loaded.
+	 */
+	private static final BitSet loadedRegions = new BitSet(REGION_COUNT);
 
 	private final class RegionData {
 
@@ -36,7 +59,19 @@ public final class RegionClipping {
 		}
 	}
 
-	private int[][][] clips = new int[4][][];
+	/**
+	 * The clipping flags of each plane, indexed by {@code localX << 6 | localY}.
+	 * A plane is only allocated once something on it is clipped.
+	 */
+	final int[][] clips = new int[4][];
+
+	/**
+	 * The version of each 8x8 chunk's clipping, indexed by
+	 * {@code chunkX << 3 | chunkY}. Bumped whenever clipping in the chunk is
+	 * added or removed, so anything derived from the clipping can tell when
+	 * it has gone stale.
+	 */
+	private final int[] chunkVersions = new int[64];
 
 	public GameObject[][][] gameObjects = new GameObject[4][][];
 
@@ -47,27 +82,71 @@ public final class RegionClipping {
 	}
 
 	public void removeClip(int x, int y, int height, int shift) {
-		int regionAbsX = (regionData.id >> 8) * 64;
-		int regionAbsY = (regionData.id & 0xff) * 64;
 		if (height < 0 || height >= 4)
 			height = 0;
 		loadRegion(x, y);
 		if (clips[height] == null) {
-			clips[height] = new int[64][64];
+			clips[height] = new int[64 * 64];
 		}
-		clips[height][x - regionAbsX][y - regionAbsY] = /* 16777215 - shift */0;
+		clips[height][tileIndex(x, y)] = /* 16777215 - shift */0;
+		chunkVersions[chunkIndex(x, y)]++;
 	}
 
 	public void addClip(int x, int y, int height, int shift) {
-		int regionAbsX = (regionData.id >> 8) * 64;
-		int regionAbsY = (regionData.id & 0xff) * 64;
 		if (height < 0 || height >= 4)
 			height = 0;
 		loadRegion(x, y);
 		if (clips[height] == null) {
-			clips[height] = new int[64][64];
+			clips[height] = new int[64 * 64];
+		}
+		clips[height][tileIndex(x, y)] |= shift;
+		chunkVersions[chunkIndex(x, y)]++;
+	}
+
+	/**
+	 * Gets the index of a tile's chunk within its region.
+	 */
+	private static int chunkIndex(int x, int y) {
+		return (x & 63) >> 3 << 3 | (y & 63) >> 3;
+	}
+
+	/**
+	 * Gets the version of the clipping in the chunk containing a tile. The
+	 * version changes whenever clipping in the chunk is added or removed.
+	 *
+	 * @param x
+	 *            the absolute x coordinate of the tile.
+	 * @param y
+	 *            the absolute y coordinate of the tile.
+	 * @return the version of the chunk's clipping.
+	 */
+	public static int getChunkVersion(int x, int y) {
+		int regionId = regionId(x, y);
+		if (regionId == -1) {
+			return 0;
 		}
-		clips[height][x - regionAbsX][y - regionAbsY] |= shift;
+		RegionClipping r = regions[regionId];
+		return r == null ? 0 : r.chunkVersions[chunkIndex(x, y)];
+	}
+
+	/**
+	 * Gets the index of a tile within a plane of its region.
+	 */
+	private static int tileIndex(int x, int y) {
+		return (x & 63) << 6 | (y & 63);
+	}
+
+	/**
+	 * Gets the id of the region containing the given coordinates.
+	 *
+	 * @return the region id, or {@code -1} if the coordinates are outside of
+	 *         the map.
+	 */
+	private static int regionId(int x, int y) {
+		if (x < 0 || y < 0 || x >= 64 * 256 || y >= 64 * 256) {
+			return -1;
+		}
+		return (x >> 6) << 8 | (y >> 6);
 	}
 
 	public static void init() {
@@ -77,13 +156,26 @@ public final class RegionClipping {
 			ByteStreamExt stream = new ByteStreamExt(archive.getData("map_index").array());
 
 			int size = stream.readUnsignedWord() & 0xFFFF;
-			regionArray = new RegionClipping[size];
 
 			for (int i = 0; i < size; i++) {
 				int regionId = stream.readUnsignedWord() & 0xFFFF;
 				int terrainFile = stream.readUnsignedWord() & 0xFFFF;
 				int objectFile = stream.readUnsignedWord() & 0xFFFF;
-				regionArray[i] = new RegionClipping(regionId, terrainFile, objectFile);
+				// The first entry for a region wins, as with a linear search.
+				if (regions[regionId] == null) {
+					regions[regionId] = new RegionClipping(regionId, terrainFile, objectFile);
+				}
+			}
+
+			switch (GameConstants.MAP_LOADING) {
+			case EAGER:
+				loadAll();
+				break;
+			case SNAPSHOT:
+				CollisionSnapshot.loadOrCreate();
+				break;
+			case LAZY:
+				break;
 			}
 
 		} catch (Exception e) {
@@ -92,125 +184,243 @@ public final class RegionClipping {
 	}
 
 	public static RegionClipping get(int regionId) {
-		for (RegionClipping r : regionArray) {
-			if (r.regionData == null) {
-				continue;
-			}
-			if (r.regionData.id == regionId) {
-				return r;
-			}
+		if (regionId < 0 || regionId >= REGION_COUNT) {
+			return null;
 		}
-		return null;
+		return regions[regionId];
 	}
 
 	public static void loadRegion(int x, int y) {
-		int regionId = -1;
+		int regionId = regionId(x, y);
+		if (regionId == -1 || regions[regionId] == null || loadedRegions.get(regionId)) {
+			return;
+		}
+		load(regions[regionId]);
+	}
+
+	/**
+	 * Gets the id of this region.
+	 */
+	int getId() {
+		return regionData.id;
+	}
+
+	/**
+	 * Marks every region as loaded, after their clipping has been restored
+	 * from a {@link CollisionSnapshot}.
+	 */
+	static void markAllLoaded() {
+		for (RegionClipping r : regions) {
+			if (r != null) {
+				loadedRegions.set(r.regionData.id);
+			}
+		}
+	}
+
+	/**
+	 * Checks if a region's map files have been loaded.
+	 */
+	static boolean isLoaded(int regionId) {
+		return loadedRegions.get(regionId);
+	}
+
+	/**
+	 * Loads the map files of a region which has not been loaded yet.
+	 */
+	private static void load(RegionClipping r) {
+		loadedRegions.set(r.regionData.id);
+		MapData data = decode(r);
+		if (data != null) {
+			data.apply();
+		}
+	}
+
+	/**
+	 * Decodes every region which has not been loaded yet. The map files are
+	 * decompressed and parsed in parallel on a fork-join pool, and the
+	 * results are then applied to the clipping on the calling thread, since
+	 * objects on the edge of a region also clip tiles in its neighbours.
+	 */
+	public static void loadAll() {
+		final long start = System.currentTimeMillis();
+		List<RegionClipping> pending = new ArrayList<>();
+		for (RegionClipping r : regions) {
+			if (r != null && !loadedRegions.get(r.regionData.id)) {
+				loadedRegions.set(r.regionData.id);
+				pending.add(r);
+			}
+		}
+		ForkJoinPool pool = new ForkJoinPool();
+		List<MapData> decoded;
 		try {
-			int regionX = x >> 3;
-			int regionY = y >> 3;
-			regionId = (regionX / 8 << 8) + regionY / 8;
-			RegionClipping r = get(regionId);
-			if (r == null)
-				return;
-			if (loadedRegions.contains(regionId))
-				return;
+			decoded = pool.submit(
+					() -> pending.parallelStream().map(RegionClipping::decode).collect(Collectors.toList())).get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IllegalStateException("Could not decode the maps!", e);
+		} finally {
+			pool.shutdown();
+		}
+		for (MapData data : decoded) {
+			if (data != null) {
+				data.apply();
+			}
+		}
+		Elvarg.getLogger().info("Decoded " + pending.size() + " regions in " + (System.currentTimeMillis() - start)
+				+ "ms.");
+	}
 
+	/**
+	 * Reads and parses the map files of a region. Does not touch any clipping,
+	 * so it can be called from any thread.
+	 *
+	 * @return the parsed map, or {@code null} if the region has no map files.
+	 */
+	private static MapData decode(RegionClipping r) {
+		try {
 			byte[] objectData = Elvarg.getCache().getDecompressedFile(CacheConstants.MAP_INDEX,
 					r.regionData.objectFile);
 			byte[] terrainData = Elvarg.getCache().getDecompressedFile(CacheConstants.MAP_INDEX,
 					r.regionData.terrainFile);
 
 			if (objectData == null || terrainData == null) {
-				loadedRegions.add(regionId);
-				return;
+				return null;
 			}
 
-			loadedRegions.add(regionId);
-			loadMaps(regionId, new ByteStreamExt(objectData), new ByteStreamExt(terrainData));
+			return new MapData(r.regionData.id, new ByteStreamExt(objectData), new ByteStreamExt(terrainData));
 		} catch (Exception e) {
-
-			loadedRegions.add(regionId);
 			e.printStackTrace();
 			// System.out.println("Error loading regionId: " + regionId);
+			return null;
 		}
 	}
 
-	private static void loadMaps(int regionId, ByteStreamExt objectStream, ByteStreamExt terrainStream) {
-		int absX = (regionId >> 8) * 64;
-		int absY = (regionId & 0xff) * 64;
-		byte[][][] heightMap = new byte[4][64][64];
-		for (int z = 0; z < 4; z++) {
-			for (int tileX = 0; tileX < 64; tileX++) {
-				for (int tileY = 0; tileY < 64; tileY++) {
-					while (true) {
-						int tileType = terrainStream.readUnsignedByte();
-						if (tileType == 0) {
-							break;
-						} else if (tileType == 1) {
-							// groundStream.getUByte();
-							terrainStream.skip(1);
-							break;
-						} else if (tileType <= 49) {
-							// groundStream.getUByte();
-							terrainStream.skip(1);
-						} else if (tileType <= 81) {
-							heightMap[z][tileX][tileY] = (byte) (tileType - 49);
+	/**
+	 * The parsed map files of a region: the tiles blocked by the terrain, and
+	 * the objects placed on it.
+	 */
+	private static final class MapData {
+
+		/**
+		 * The blocked tiles, as {@code x, y, height} triples.
+		 */
+		private final IntArrayBuilder blocked = new IntArrayBuilder();
+
+		/**
+		 * The objects, as {@code id, x, y, height, type, direction} tuples.
+		 */
+		private final IntArrayBuilder objects = new IntArrayBuilder();
+
+		private MapData(int regionId, ByteStreamExt objectStream, ByteStreamExt terrainStream) {
+			int absX = (regionId >> 8) * 64;
+			int absY = (regionId & 0xff) * 64;
+			byte[][][] heightMap = new byte[4][64][64];
+			for (int z = 0; z < 4; z++) {
+				for (int tileX = 0; tileX < 64; tileX++) {
+					for (int tileY = 0; tileY < 64; tileY++) {
+						while (true) {
+							int tileType = terrainStream.readUnsignedByte();
+							if (tileType == 0) {
+								break;
+							} else if (tileType == 1) {
+								// groundStream.getUByte();
+								terrainStream.skip(1);
+								break;
+							} else if (tileType <= 49) {
+								// groundStream.getUByte();
+								terrainStream.skip(1);
+							} else if (tileType <= 81) {
+								heightMap[z][tileX][tileY] = (byte) (tileType - 49);
+							}
 						}
 					}
 				}
 			}
-		}
-		for (int i = 0; i < 4; i++) {
-			for (int i2 = 0; i2 < 64; i2++) {
-				for (int i3 = 0; i3 < 64; i3++) {
-					if ((heightMap[i][i2][i3] & 1) == 1) {
-						int height = i;
-						if ((heightMap[1][i2][i3] & 2) == 2) {
-							height--;
-						}
-						if (height >= 0 && height <= 3) {
-							addClipping(absX + i2, absY + i3, height, 0x200000);
+			for (int i = 0; i < 4; i++) {
+				for (int i2 = 0; i2 < 64; i2++) {
+					for (int i3 = 0; i3 < 64; i3++) {
+						if ((heightMap[i][i2][i3] & 1) == 1) {
+							int height = i;
+							if ((heightMap[1][i2][i3] & 2) == 2) {
+								height--;
+							}
+							if (height >= 0 && height <= 3) {
+								blocked.add(absX + i2, absY + i3, height);
+							}
 						}
 					}
 				}
 			}
-		}
-		int objectId = -1;
-		int incr;
-		while ((incr = objectStream.getUSmart()) != 0) {
-			objectId += incr;
-			int location = 0;
-			int incr2;
-			while ((incr2 = objectStream.getUSmart()) != 0) {
-				location += incr2 - 1;
-				int localX = location >> 6 & 0x3f;
-				int localY = location & 0x3f;
-				int height = location >> 12;
-				int objectData = objectStream.readUnsignedByte();
-				int type = objectData >> 2;
-				int direction = objectData & 0x3;
-				if (localX < 0 || localX >= 64 || localY < 0 || localY >= 64) {
-					continue;
-				}
-				if ((heightMap[1][localX][localY] & 2) == 2) {
-					height--;
+			int objectId = -1;
+			int incr;
+			while ((incr = objectStream.getUSmart()) != 0) {
+				objectId += incr;
+				int location = 0;
+				int incr2;
+				while ((incr2 = objectStream.getUSmart()) != 0) {
+					location += incr2 - 1;
+					int localX = location >> 6 & 0x3f;
+					int localY = location & 0x3f;
+					int height = location >> 12;
+					int objectData = objectStream.readUnsignedByte();
+					int type = objectData >> 2;
+					int direction = objectData & 0x3;
+					if (localX < 0 || localX >= 64 || localY < 0 || localY >= 64) {
+						continue;
+					}
+					if ((heightMap[1][localX][localY] & 2) == 2) {
+						height--;
+					}
+					if (height >= 0 && height <= 3)
+						objects.add(objectId, absX + localX, absY + localY, height, type, direction);
 				}
-				if (height >= 0 && height <= 3)
-					addObject(objectId, absX + localX, absY + localY, height, type, direction); // Add
-																								// object
-																								// to
-																								// clipping
 			}
 		}
+
+		/**
+		 * Adds the parsed map to the clipping. Must only be called by one
+		 * thread at a time.
+		 */
+		private void apply() {
+			int[] tiles = blocked.array();
+			for (int i = 0; i < blocked.size(); i += 3) {
+				addClipping(tiles[i], tiles[i + 1], tiles[i + 2], 0x200000);
+			}
+			int[] objs = objects.array();
+			for (int i = 0; i < objects.size(); i += 6) {
+				addObject(objs[i], objs[i + 1], objs[i + 2], objs[i + 3], objs[i + 4], objs[i + 5]);
+			}
+		}
+	}
+
+	/**
+	 * A growable array of ints.
+	 */
+	private static final class IntArrayBuilder {
+
+		private int[] array = new int[64];
+		private int size;
+
+		private void add(int... values) {
+			if (size + values.length > array.length) {
+				array = Arrays.copyOf(array, Math.max(array.length * 2, size + values.length));
+			}
+			System.arraycopy(values, 0, array, size, values.length);
+			size += values.length;
+		}
+
+		private int[] array() {
+			return array;
+		}
+
+		private int size() {
+			return size;
+		}
 	}
 
 	public static void addClipping(int x, int y, int height, int shift) {
 		// System.out.println("Added clip at "+x+" and "+y+"");
 		RegionClipping.loadRegion(x, y);
-		int regionX = x >> 3;
-		int regionY = y >> 3;
-		int regionId = (regionX / 8 << 8) + regionY / 8;
-		RegionClipping r = get(regionId);
+		RegionClipping r = get(regionId(x, y));
 		if (r != null) {
 			r.addClip(x, y, height, shift);
 		}
@@ -218,22 +428,15 @@ public final class RegionClipping {
 
 	public static void removeClipping(int x, int y, int height, int shift) {
 		RegionClipping.loadRegion(x, y);
-		int regionX = x >> 3;
-		int regionY = y >> 3;
-		int regionId = (regionX / 8 << 8) + regionY / 8;
-
-		RegionClipping r = get(regionId);
+		RegionClipping r = get(regionId(x, y));
 		if (r != null) {
 			r.removeClip(x, y, height, shift);
 		}
 	}
 
 	public static RegionClipping forPosition(Position position) {
-		int regionX = position.getX() >> 3;
-		int regionY = position.getY() >> 3;
-		int regionId = ((regionX / 8) << 8) + (regionY / 8);
 		loadRegion(position.getX(), position.getY());
-		return get(regionId);
+		return get(regionId(position.getX(), position.getY()));
 	}
 
 	public static int[] getObjectInformation(Position position) {
@@ -474,31 +677,31 @@ public final class RegionClipping {
 				gameObject.getType(), gameObject.getFace());
 	}
 
+	/**
+	 * Gets the clipping flags of a tile. This is called for every tile probed
+	 * by pathfinding and movement checks, so it does not search or allocate
+	 * unless the tile's region still has to be loaded.
+	 *
+	 * @return the clipping flags, or {@code 0} if the tile is not on the map.
+	 */
 	public static int getClipping(int x, int y, int height) {
-		loadRegion(x, y);
-		int regionX = x >> 3;
-		int regionY = y >> 3;
-		int regionId = ((regionX / 8) << 8) + (regionY / 8);
 		if (height >= 4)
 			height = 0;
-		else if (height == -1)
+		else if (height < 0)
+			return 0;
+		int regionId = regionId(x, y);
+		if (regionId == -1) {
 			return 0;
-		RegionClipping r = get(regionId);
-		if (r != null) {
-			return r.getClip(x, y, height);
 		}
-		return 0;
-	}
-
-	private int getClip(int x, int y, int height) {
-		// height %= 4;
-		int regionAbsX = (regionData.id >> 8) * 64;
-		int regionAbsY = (regionData.id & 0xff) * 64;
-		loadRegion(x, y);
-		if (clips[height] == null) {
-			clips[height] = new int[64][64];
+		RegionClipping r = regions[regionId];
+		if (r == null) {
+			return 0;
+		}
+		if (!loadedRegions.get(regionId)) {
+			load(r);
 		}
-		return clips[height][x - regionAbsX][y - regionAbsY];
+		int[] plane = r.clips[height];
+		return plane == null ? 0 : plane[tileIndex(x, y)];
 	}
 
 	public static boolean canMove(int startX, int startY, int endX, int endY, int height, int xLength, int yLength) {
@@ -41,6 +41,14 @@ public class ClanChat {
 	private CopyOnWriteArrayList<BannedMember> bannedMembers = new CopyOnWriteArrayList<BannedMember>();
 	private Map<String, ClanChatRank> rankedNames = new HashMap<String, ClanChatRank>();
 
+	/*
+	 * The member list as it was last sent: the members in the order they are
+	 * listed, the row of each, and whether each was shown the member options.
+	 */
+	private Player[] listedMembers = new Player[0];
+	private String[] listedRows = new String[0];
+	private boolean[] listedOptions = new boolean[0];
+
 	public Player getOwner() {
 		return owner;
 	}
@@ -114,6 +122,25 @@ public class ClanChat {
 		return rankedNames;
 	}
 
+	public Player[] getListedMembers() {
+		return listedMembers;
+	}
+
+	public String[] getListedRows() {
+		return listedRows;
+	}
+
+	public boolean[] getListedOptions() {
+		return listedOptions;
+	}
+
+	public ClanChat setListed(Player[] members, String[] rows, boolean[] options) {
+		this.listedMembers = members;
+		this.listedRows = rows;
+		this.listedOptions = options;
+		return this;
+	}
+
 	public CopyOnWriteArrayList<BannedMember> getBannedNames() {
 		return bannedMembers;
 	}
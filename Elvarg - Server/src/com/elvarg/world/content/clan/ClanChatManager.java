@@ -6,8 +6,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 
 import com.elvarg.util.Misc;
@@ -200,72 +202,84 @@ public class ClanChatManager {
 		player.getPacketSender().sendMessage("That channel does not exist.");
 	}
 
+	/**
+	 * The first and last row of the member list.
+	 */
+	private static final int FIRST_LIST_ROW = 37144, LAST_LIST_ROW = 37243;
+
+	/**
+	 * Orders members by rank: the owner first, then from the highest rank to
+	 * the lowest, then unranked members. The sort is stable, so members of the
+	 * same rank stay in the order they joined, and most changes only move a
+	 * few rows.
+	 */
+	private static int listPriority(ClanChat clan, Player member) {
+		ClanChatRank rank = clan.getRank(member);
+		if (rank == null) {
+			return -1;
+		}
+		return rank == ClanChatRank.OWNER ? Integer.MAX_VALUE : rank.ordinal();
+	}
+
+	/**
+	 * Sends the member list to every member. Members who were already listed
+	 * only receive the rows which changed, members who have just joined
+	 * receive every row.
+	 */
 	public static void updateList(ClanChat clan) {
-		Collections.sort(clan.getMembers(), new Comparator<Player>() {
-			@Override
-			public int compare(Player o1, Player o2) {
-				ClanChatRank rank1 = clan.getRank(o1);
-				ClanChatRank rank2 = clan.getRank(o2);
-				if (rank1 == null && rank2 == null) {
-					return 1;
-				}
-				if (rank1 == null && rank2 != null) {
-					return 1;
-				} else if (rank1 != null && rank2 == null) {
-					return -1;
-				}
-				if (rank1.ordinal() == rank2.ordinal()) {
-					return 1;
-				}
-				if (rank1 == ClanChatRank.OWNER) {
-					return -1;
-				} else if (rank2 == ClanChatRank.OWNER) {
-					return 1;
-				}
-				if (rank1.ordinal() > rank2.ordinal()) {
-					return -1;
-				}
-				return 1;
-			}
-		});
+		clan.getMembers().sort((o1, o2) -> Integer.compare(listPriority(clan, o2), listPriority(clan, o1)));
+
+		List<Player> listed = new ArrayList<Player>(clan.getMembers().size());
 		for (Player member : clan.getMembers()) {
 			if (member != null) {
-				int childId = 37144;
-				for (Player others : clan.getMembers()) {
-					if (others != null) {
-						ClanChatRank rank = clan.getRank(others);
-
-						int image = -1;
-						if (rank != null) {
-							image = rank.getSpriteId();
-						}
-
-						String prefix = image >= 0 ? ("<img=" + (image) + ">") : "";
-						member.getPacketSender().sendString(childId, prefix + others.getUsername());
-						childId++;
-					}
-				}
-				for (int i = childId; i < 37244; i++) {
-					member.getPacketSender().sendString(i, "");
-				}
-				ClanChatRank rank = clan.getRank(member);
-
-				if (rank != null) {
-					if (rank == ClanChatRank.OWNER || rank == ClanChatRank.STAFF
-							|| clan.getRankRequirement()[ClanChat.RANK_REQUIRED_TO_KICK] != null && rank
-									.ordinal() >= clan.getRankRequirement()[ClanChat.RANK_REQUIRED_TO_KICK].ordinal()) {
+				listed.add(member);
+			}
+		}
+		Player[] members = listed.toArray(new Player[listed.size()]);
+		String[] rows = new String[members.length];
+		boolean[] options = new boolean[members.length];
+		for (int i = 0; i < members.length; i++) {
+			ClanChatRank rank = clan.getRank(members[i]);
+			int image = rank == null ? -1 : rank.getSpriteId();
+			rows[i] = (image >= 0 ? ("<img=" + (image) + ">") : "") + members[i].getUsername();
+			options[i] = rank != null && (rank == ClanChatRank.OWNER || rank == ClanChatRank.STAFF
+					|| clan.getRankRequirement()[ClanChat.RANK_REQUIRED_TO_KICK] != null
+							&& rank.ordinal() >= clan.getRankRequirement()[ClanChat.RANK_REQUIRED_TO_KICK].ordinal());
+		}
+
+		// Find the rows which changed since the list was last sent.
+		String[] previousRows = clan.getListedRows();
+		List<Integer> changed = new ArrayList<Integer>();
+		for (int i = 0; i < Math.max(rows.length, previousRows.length); i++) {
+			String row = i < rows.length ? rows[i] : "";
+			if (!row.equals(i < previousRows.length ? previousRows[i] : "")) {
+				changed.add(i);
+			}
+		}
 
-						member.getPacketSender().sendShowClanChatOptions(true);
+		Map<Player, Integer> previousIndices = new IdentityHashMap<Player, Integer>();
+		for (int i = 0; i < clan.getListedMembers().length; i++) {
+			previousIndices.put(clan.getListedMembers()[i], i);
+		}
 
-					} else {
-						member.getPacketSender().sendShowClanChatOptions(false);
-					}
-				} else {
-					member.getPacketSender().sendShowClanChatOptions(false);
+		for (int i = 0; i < members.length; i++) {
+			Player member = members[i];
+			Integer previous = previousIndices.get(member);
+			if (previous == null) {
+				for (int row = 0; row <= LAST_LIST_ROW - FIRST_LIST_ROW; row++) {
+					member.getPacketSender().sendString(FIRST_LIST_ROW + row, row < rows.length ? rows[row] : "");
 				}
-
+				member.getPacketSender().sendShowClanChatOptions(options[i]);
+				continue;
+			}
+			for (int row : changed) {
+				member.getPacketSender().sendString(FIRST_LIST_ROW + row, row < rows.length ? rows[row] : "");
+			}
+			if (clan.getListedOptions()[previous] != options[i]) {
+				member.getPacketSender().sendShowClanChatOptions(options[i]);
 			}
 		}
+		clan.setListed(members, rows, options);
 	}
 
 	public static void sendMessage(Player player, String message) {
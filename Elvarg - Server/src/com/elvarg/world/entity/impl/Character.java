@@ -3,12 +3,14 @@ package com.elvarg.world.entity.impl;
 import com.elvarg.engine.task.Task;
 import com.elvarg.engine.task.TaskManager;
 import com.elvarg.util.Stopwatch;
+import com.elvarg.world.World;
 import com.elvarg.world.entity.Entity;
 import com.elvarg.world.entity.combat.Combat;
 import com.elvarg.world.entity.combat.CombatType;
 import com.elvarg.world.entity.combat.hit.HitDamage;
 import com.elvarg.world.entity.impl.npc.NPC;
 import com.elvarg.world.entity.impl.player.Player;
+import com.elvarg.world.entity.updating.UpdateBlockCache;
 import com.elvarg.world.model.Animation;
 import com.elvarg.world.model.Direction;
 import com.elvarg.world.model.Flag;
@@ -30,6 +32,19 @@ public abstract class Character extends Entity {
 		super(position);
 	}
 
+	@Override
+	public Character setPosition(Position position) {
+		super.setPosition(position);
+		if (isRegistered()) {
+			if (isPlayer()) {
+				World.getPlayers().relocate(getAsPlayer());
+			} else if (isNpc()) {
+				World.getNpcs().relocate(getAsNpc());
+			}
+		}
+		return this;
+	}
+
 	public Character moveTo(Position teleportTarget) {
 		getMovementQueue().reset();
 		setPosition(teleportTarget.copy());
@@ -74,6 +89,7 @@ public abstract class Character extends Entity {
 			lastDirection = Direction.NONE;
 	private Stopwatch lastCombat = new Stopwatch();
 	private UpdateFlag updateFlag = new UpdateFlag();
+	private final UpdateBlockCache updateBlockCache = new UpdateBlockCache();
 	private Location location = Location.DEFAULT;
 	private Position positionToFace;
 	private Animation animation;
@@ -114,6 +130,11 @@ public abstract class Character extends Entity {
 	 */
 	private boolean registered;
 
+	/**
+	 * The key of the {@link ChunkIndex} bucket this character is in.
+	 */
+	private int chunkKey = ChunkIndex.NOT_INDEXED;
+
 	/*
 	 * Getters and setters Also contains methods.
 	 */
@@ -215,6 +236,10 @@ public abstract class Character extends Entity {
 		return updateFlag;
 	}
 
+	public UpdateBlockCache getUpdateBlockCache() {
+		return updateBlockCache;
+	}
+
 	public MovementQueue getMovementQueue() {
 		return movementQueue;
 	}
@@ -495,6 +520,14 @@ public abstract class Character extends Entity {
 		this.resetMovementQueue = resetMovementQueue;
 	}
 
+	int getChunkKey() {
+		return chunkKey;
+	}
+
+	void setChunkKey(int chunkKey) {
+		this.chunkKey = chunkKey;
+	}
+
 	public void setNeedsPlacement(boolean needsPlacement) {
 		this.needsPlacement = needsPlacement;
 	}
@@ -48,6 +48,12 @@ public final class CharacterList<E extends Character> implements Iterable<E> {
 	 */
 	private final Queue<Integer> slotQueue = new LinkedList<>();
 
+	/**
+	 * The spatial index of the characters within this collection, used to find
+	 * characters near a position without scanning the backing array.
+	 */
+	private final ChunkIndex<E> chunkIndex = new ChunkIndex<>();
+
 	/**
 	 * The finite capacity of this collection.
 	 */
@@ -89,6 +95,7 @@ public final class CharacterList<E extends Character> implements Iterable<E> {
 			e.setIndex(slot);
 			e.onRegister();
 			characters[slot] = e;
+			chunkIndex.add(e);
 			size++;
 			return true;
 		}
@@ -109,6 +116,7 @@ public final class CharacterList<E extends Character> implements Iterable<E> {
 		if (e.isRegistered() && characters[e.getIndex()] != null) {
 			e.setRegistered(false);
 			characters[e.getIndex()] = null;
+			chunkIndex.remove(e);
 			slotQueue.add(e.getIndex());
 			size--;
 			return true;
@@ -117,6 +125,27 @@ public final class CharacterList<E extends Character> implements Iterable<E> {
 		return false;
 	}
 
+	/**
+	 * Updates the spatial index for an element whose position has changed.
+	 *
+	 * @param e
+	 *            the element that has moved.
+	 */
+	public void relocate(E e) {
+		if (e.isRegistered() && characters[e.getIndex()] == e) {
+			chunkIndex.relocate(e);
+		}
+	}
+
+	/**
+	 * Gets the spatial index of the elements in this collection.
+	 *
+	 * @return the chunk index.
+	 */
+	public ChunkIndex<E> getChunkIndex() {
+		return chunkIndex;
+	}
+
 	/**
 	 * Determines if this collection contains the specified element.
 	 *
@@ -282,6 +311,7 @@ public final class CharacterList<E extends Character> implements Iterable<E> {
 	@SuppressWarnings("unchecked")
 	public void clear() {
 		forEach(this::remove);
+		chunkIndex.clear();
 		characters = (E[]) new Character[capacity];
 		size = 0;
 	}
@@ -0,0 +1,143 @@
+package com.elvarg.world.entity.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.elvarg.world.model.Position;
+
+/**
+ * A spatial index which buckets characters by the 8x8 chunk they are standing
+ * in. Updating uses this to discover nearby characters without scanning every
+ * registered character in the world.
+ * <p>
+ * The index is only modified on the game thread (registration, movement and
+ * teleports), and is only read concurrently during the parallel updating
+ * stage, when no character is moving.
+ *
+ * @param <E>
+ *            the type of character being indexed.
+ */
+public final class ChunkIndex<E extends Character> {
+
+	/**
+	 * The key used for characters which are not currently indexed.
+	 */
+	static final int NOT_INDEXED = -1;
+
+	/**
+	 * The buckets of characters, keyed by packed chunk coordinates.
+	 */
+	private final Map<Integer, List<E>> chunks = new HashMap<>();
+
+	/**
+	 * Adds a character to the bucket of the chunk it is currently in.
+	 *
+	 * @param e
+	 *            the character to add.
+	 */
+	public void add(E e) {
+		int key = key(e.getPosition());
+		List<E> bucket = chunks.get(key);
+		if (bucket == null) {
+			bucket = new ArrayList<>();
+			chunks.put(key, bucket);
+		}
+		bucket.add(e);
+		e.setChunkKey(key);
+	}
+
+	/**
+	 * Removes a character from the bucket it was last indexed in.
+	 *
+	 * @param e
+	 *            the character to remove.
+	 */
+	public void remove(E e) {
+		int key = e.getChunkKey();
+		if (key == NOT_INDEXED) {
+			return;
+		}
+		List<E> bucket = chunks.get(key);
+		if (bucket != null) {
+			bucket.remove(e);
+			if (bucket.isEmpty()) {
+				chunks.remove(key);
+			}
+		}
+		e.setChunkKey(NOT_INDEXED);
+	}
+
+	/**
+	 * Moves a character to a new bucket if their position has crossed a chunk
+	 * border since they were last indexed.
+	 *
+	 * @param e
+	 *            the character that moved.
+	 */
+	public void relocate(E e) {
+		if (e.getChunkKey() == key(e.getPosition())) {
+			return;
+		}
+		remove(e);
+		add(e);
+	}
+
+	/**
+	 * Collects every indexed character whose chunk lies within
+	 * {@code distance} tiles of {@code center} on the same height level.
+	 * Callers are still expected to do their own exact distance check.
+	 *
+	 * @param center
+	 *            the position to search around.
+	 * @param distance
+	 *            the amount of tiles to search in each direction.
+	 * @param out
+	 *            the list the found characters are added to.
+	 */
+	public void collect(Position center, int distance, List<E> out) {
+		final int minChunkX = (center.getX() - distance) >> 3;
+		final int maxChunkX = (center.getX() + distance) >> 3;
+		final int minChunkY = (center.getY() - distance) >> 3;
+		final int maxChunkY = (center.getY() + distance) >> 3;
+		for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+			for (int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++) {
+				List<E> bucket = chunks.get(key(chunkX, chunkY, center.getZ()));
+				if (bucket != null) {
+					out.addAll(bucket);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes every character from this index.
+	 */
+	public void clear() {
+		for (List<E> bucket : chunks.values()) {
+			for (E e : bucket) {
+				e.setChunkKey(NOT_INDEXED);
+			}
+		}
+		chunks.clear();
+	}
+
+	/**
+	 * Packs the chunk of the given position into a single key.
+	 *
+	 * @param position
+	 *            the position to get the chunk key for.
+	 * @return the chunk key.
+	 */
+	private static int key(Position position) {
+		return key(position.getX() >> 3, position.getY() >> 3, position.getZ());
+	}
+
+	/**
+	 * Packs the given chunk coordinates into a single key.
+	 */
+	private static int key(int chunkX, int chunkY, int z) {
+		return (z & 0x1FF) << 22 | (chunkX & 0x7FF) << 11 | (chunkY & 0x7FF);
+	}
+}
@@ -112,6 +112,11 @@ public class NPC extends Character {
 		return other instanceof NPC && ((NPC) other).getIndex() == getIndex();
 	}
 
+	@Override
+	public int hashCode() {
+		return getIndex();
+	}
+
 	@Override
 	public int getSize() {
 		return getDefinition() == null ? 1 : getDefinition().getSize();
@@ -1,40 +1,56 @@
 package com.elvarg.world.entity.impl.object;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
 
 import com.elvarg.world.World;
 import com.elvarg.world.collision.region.RegionClipping;
 import com.elvarg.world.entity.impl.player.Player;
 import com.elvarg.world.model.Position;
 
+/**
+ * Handles the global objects, which are seen by every player.
+ * <p>
+ * Objects are bucketed by the 8x8 chunk they are in, so spawning for a
+ * player who changed region only visits the chunks around them, and objects
+ * with a timer are queued by the time they expire, so finding the expired
+ * ones doesn't visit every object. The index is only modified on the game
+ * thread, apart from the world objects spawned while starting up.
+ */
 public class ObjectHandler {
 
-	/** All of the registered Objects. */
-	private static List<GameObject> objects = new CopyOnWriteArrayList<GameObject>();
+	/** All of the registered Objects, keyed by packed chunk coordinates. */
+	private static final Map<Integer, List<GameObject>> chunks = new HashMap<>();
+
+	/** The registered objects with a timer, soonest to expire first. */
+	private static final PriorityQueue<Expiry> expiries = new PriorityQueue<>();
 
 	/**
 	 * Processes all game objects Deletes global objects after their timer ends
 	 * etc.
 	 */
 	public static void process() {
+		final long now = System.nanoTime();
+		Expiry expiry;
+		while ((expiry = expiries.peek()) != null && expiry.deadline - now <= 0) {
+			expiries.poll();
+			GameObject obj = expiry.object;
 
-		List<GameObject> toRemove = new ArrayList<GameObject>();
-		for (GameObject obj : objects) {
-			if (obj == null) {
+			// The object may have been despawned early.
+			if (!isRegistered(obj)) {
 				continue;
 			}
 
-			// Despawn global objects by adding them to a list
-			if (obj.getTimer() != null && obj.getTimer().finished()) {
-				toRemove.add(obj);
+			// The timer may have been restarted since it was queued.
+			if (!obj.getTimer().finished()) {
+				schedule(obj);
+				continue;
 			}
 
-		}
-
-		// Go through the despawn list and remove the objects one by one.
-		for (GameObject obj : toRemove) {
 			despawnGlobalObject(obj);
 		}
 	}
@@ -50,14 +66,17 @@ public class ObjectHandler {
 			return; // Don't spawn deleted objects
 		}
 		
-		objects.add(object);
+		chunks.computeIfAbsent(key(object.getPosition()), k -> new ArrayList<>()).add(object);
+		if (object.getTimer() != null) {
+			schedule(object);
+		}
 		RegionClipping.addObject(object);
 
 		// Spawn the object for all nearby players
-		for (Player p : World.getPlayers()) {
+		for (Player p : getNearbyPlayers(object)) {
 
 			// Check that the player is in proper range
-			if (p == null || !p.getPosition().isWithinDistance(object.getPosition(), DISTANCE_SPAWN)) {
+			if (!p.getPosition().isWithinDistance(object.getPosition(), DISTANCE_SPAWN)) {
 				continue;
 			}
 
@@ -72,14 +91,18 @@ public class ObjectHandler {
 	 * @param object
 	 */
 	public static void despawnGlobalObject(GameObject object) {
-		objects.remove(object);
+		int key = key(object.getPosition());
+		List<GameObject> bucket = chunks.get(key);
+		if (bucket != null && bucket.remove(object) && bucket.isEmpty()) {
+			chunks.remove(key);
+		}
 		RegionClipping.removeObject(object);
 
 		// Despawn the object for all nearby players
-		for (Player p : World.getPlayers()) {
+		for (Player p : getNearbyPlayers(object)) {
 
 			// Check that the player is in proper range
-			if (p == null || !p.getPosition().isWithinDistance(object.getPosition(), DISTANCE_SPAWN)) {
+			if (!p.getPosition().isWithinDistance(object.getPosition(), DISTANCE_SPAWN)) {
 				continue;
 			}
 
@@ -140,27 +163,107 @@ public class ObjectHandler {
 		}
 		
 		// Then spawn the non-deleted objects
-		for (GameObject obj : objects) {
-			if (obj == null) {
-				continue;
-			}
-
-			if (player.getPosition().isWithinDistance(obj.getPosition(), DISTANCE_SPAWN)) {
-				spawnPersonalObject(player, obj);
+		final Position position = player.getPosition();
+		final int minChunkX = (position.getX() - DISTANCE_SPAWN) >> 3;
+		final int maxChunkX = (position.getX() + DISTANCE_SPAWN) >> 3;
+		final int minChunkY = (position.getY() - DISTANCE_SPAWN) >> 3;
+		final int maxChunkY = (position.getY() + DISTANCE_SPAWN) >> 3;
+		for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+			for (int chunkY = minChunkY; chunkY <= maxChunkY; chunkY++) {
+				List<GameObject> bucket = chunks.get(key(chunkX, chunkY, position.getZ()));
+				if (bucket == null) {
+					continue;
+				}
+				for (GameObject obj : bucket) {
+					if (position.isWithinDistance(obj.getPosition(), DISTANCE_SPAWN)) {
+						spawnPersonalObject(player, obj);
+					}
+				}
 			}
 		}
 	}
 
 	/**
 	 * Returns the list of all game objects.
-	 * @return The objects list
+	 * @return A copy of the objects list
 	 */
 	public static List<GameObject> getObjects() {
+		List<GameObject> objects = new ArrayList<>();
+		for (List<GameObject> bucket : chunks.values()) {
+			objects.addAll(bucket);
+		}
 		return objects;
 	}
 
+	/**
+	 * Checks if an object is registered.
+	 */
+	private static boolean isRegistered(GameObject object) {
+		List<GameObject> bucket = chunks.get(key(object.getPosition()));
+		return bucket != null && bucket.contains(object);
+	}
+
+	/**
+	 * Queues an object to be despawned once its timer ends.
+	 */
+	private static void schedule(GameObject object) {
+		expiries.add(new Expiry(object, System.nanoTime()
+				+ TimeUnit.MILLISECONDS.toNanos(object.getTimer().millisecondsRemaining())));
+	}
+
+	/**
+	 * Gets the players who may be within spawning distance of an object, by
+	 * only looking at the chunks around it. Callers are still expected to do
+	 * their own exact distance check.
+	 */
+	private static List<Player> getNearbyPlayers(GameObject object) {
+		List<Player> nearby = new ArrayList<>();
+		World.getPlayers().getChunkIndex().collect(object.getPosition(), DISTANCE_SPAWN, nearby);
+		return nearby;
+	}
+
+	/**
+	 * Packs the chunk of the given position into a single key.
+	 */
+	private static int key(Position position) {
+		return key(position.getX() >> 3, position.getY() >> 3, position.getZ());
+	}
+
+	/**
+	 * Packs the given chunk coordinates into a single key.
+	 */
+	private static int key(int chunkX, int chunkY, int z) {
+		return (z & 0x1FF) << 22 | (chunkX & 0x7FF) << 11 | (chunkY & 0x7FF);
+	}
+
 	/***
 	 * Spawn or despawn objects for entities within 70 squares of distance
 	 */
 	private static final int DISTANCE_SPAWN = 70;
+
+	/**
+	 * An object with a timer, along with the time it expires.
+	 */
+	private static final class Expiry implements Comparable<Expiry> {
+
+		/**
+		 * The object.
+		 */
+		private final GameObject object;
+
+		/**
+		 * The {@link System#nanoTime()} the object's timer ends.
+		 */
+		private final long deadline;
+
+		private Expiry(GameObject object, long deadline) {
+			this.object = object;
+			this.deadline = deadline;
+		}
+
+		@Override
+		public int compareTo(Expiry other) {
+			return Long.compare(deadline - other.deadline, 0);
+		}
+	}
 }
@@ -1,8 +1,10 @@
 
 package com.elvarg.world.entity.impl.player;
 
+import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 
 import com.elvarg.GameConstants;
 import com.elvarg.cache.impl.definitions.ItemDefinition;
@@ -160,7 +162,12 @@ public class Player extends Character {
 		}
 
 		Player p = (Player) o;
-		return p.getIndex() == getIndex() || p.getUsername().equals(username);
+		return username == null ? p == this : username.equals(p.getUsername());
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(username);
 	}
 
 	@Override
@@ -261,6 +268,8 @@ public class Player extends Character {
 	save();		// Send and queue the logout. Also close channel!
 		getPacketSender().sendLogout();
 		session.setState(SessionState.LOGGED_OUT);
+		getSession().releaseQueuedPackets();
+		getSession().flush();
 		if (getSession().getChannel().isOpen()) {
 			getSession().getChannel().close();
 		}
@@ -454,6 +463,8 @@ public class Player extends Character {
 	private final Stopwatch lougoutTimer = new Stopwatch();
 	private final List<Player> localPlayers = new LinkedList<Player>();
 	private final List<NPC> localNpcs = new LinkedList<NPC>();
+	private final BitSet localPlayerIndices = new BitSet();
+	private final BitSet localNpcIndices = new BitSet();
 	private final PacketSender packetSender = new PacketSender(this);
 	private final Appearance appearance = new Appearance(this);
 	private final SkillManager skillManager = new SkillManager(this);
@@ -612,6 +623,22 @@ public class Player extends Character {
 		return localNpcs;
 	}
 
+	/**
+	 * The indices of the players in {@link #getLocalPlayers()}, used for
+	 * constant time membership checks during updating.
+	 */
+	public BitSet getLocalPlayerIndices() {
+		return localPlayerIndices;
+	}
+
+	/**
+	 * The indices of the npcs in {@link #getLocalNpcs()}, used for constant
+	 * time membership checks during updating.
+	 */
+	public BitSet getLocalNpcIndices() {
+		return localNpcIndices;
+	}
+
 	public Player setInterfaceId(int interfaceId) {
 		this.interfaceId = interfaceId;
 		return this;
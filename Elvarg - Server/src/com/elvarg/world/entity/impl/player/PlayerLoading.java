@@ -1,10 +1,5 @@
 package com.elvarg.world.entity.impl.player;
 
-import java.io.File;
-import java.io.FileReader;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-
 import com.elvarg.net.login.LoginResponses;
 import com.elvarg.world.content.skills.SkillManager.Skills;
 import com.elvarg.world.model.Item;
@@ -15,27 +10,23 @@ import com.elvarg.world.model.container.impl.Bank;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 
 public class PlayerLoading {
 
 	public static int getResult(Player player) {
 
-		// Create the path and file objects.
-		Path path = Paths.get("./data/saves/characters/", player.getUsername() + ".json");
-		File file = path.toFile();
+		// Now read the properties from the character file, or from a save
+		// which is still waiting to be written.
+		try {
+			JsonObject reader = PlayerPersistence.load(player.getUsername());
 
-		// If the file doesn't exist, we're logging in for the first
-		// time and can skip all of this.
-		if (!file.exists()) {
-			return LoginResponses.NEW_ACCOUNT;
-		}
+			// If there is no file, we're logging in for the first
+			// time and can skip all of this.
+			if (reader == null) {
+				return LoginResponses.NEW_ACCOUNT;
+			}
 
-		// Now read the properties from the json parser.
-		try (FileReader fileReader = new FileReader(file)) {
-			JsonParser fileParser = new JsonParser();
 			Gson builder = new GsonBuilder().create();
-			JsonObject reader = (JsonObject) fileParser.parse(fileReader);
 
 			if (reader.has("username")) {
 				player.setUsername(reader.get("username").getAsString());
@@ -0,0 +1,249 @@
+package com.elvarg.world.entity.impl.player;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import com.elvarg.Elvarg;
+import com.elvarg.GameConstants;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Writes character files on a dedicated thread, so saving never blocks the
+ * game thread or a network thread on disk access.
+ * <p>
+ * Saves are write-behind: {@link PlayerSaving} takes a snapshot of the
+ * player on the game thread and hands it to this service, which only keeps
+ * the latest snapshot of each player. Saving the same player several times
+ * before their file has been written therefore only writes it once. Files
+ * are written to a temporary file first and then moved over the old one, so
+ * a crash mid-write never leaves a truncated character file behind.
+ */
+public final class PlayerPersistence {
+
+	/**
+	 * The directory character files are stored in.
+	 */
+	private static final Path DIRECTORY = Paths.get("./data/saves/characters/");
+
+	/**
+	 * The extension of JSON character files.
+	 */
+	private static final String JSON_EXTENSION = ".json";
+
+	/**
+	 * The extension of binary character files.
+	 */
+	private static final String BINARY_EXTENSION = ".dat";
+
+	/**
+	 * The gson instance used to write JSON character files.
+	 */
+	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+	/**
+	 * The latest snapshot of every player which is waiting to be written,
+	 * keyed by username.
+	 */
+	private static final Map<String, JsonObject> pending = new ConcurrentHashMap<>();
+
+	/**
+	 * The usernames of the players whose snapshots are waiting to be written,
+	 * in the order they were first saved.
+	 */
+	private static final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+
+	/**
+	 * Is the service accepting and writing saves?
+	 */
+	private static volatile boolean running = true;
+
+	/**
+	 * The thread which writes the character files.
+	 */
+	private static final Thread worker = new Thread(PlayerPersistence::run, "PersistenceThread");
+
+	static {
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Queues a snapshot of a player to be written to their character file.
+	 * Replaces any snapshot of the same player which has not been written
+	 * yet.
+	 *
+	 * @param username
+	 *            the player's username.
+	 * @param snapshot
+	 *            the player's character file.
+	 */
+	public static void submit(String username, JsonObject snapshot) {
+		if (pending.put(username, snapshot) == null) {
+			queue.offer(username);
+		}
+		if (!running) {
+			// Shutting down, write it ourselves.
+			drain();
+		}
+	}
+
+	/**
+	 * Loads a player's character file. A snapshot which is still waiting to
+	 * be written is returned instead of the file, so a player who logs back
+	 * in straight after logging out never loads stale data.
+	 *
+	 * @param username
+	 *            the player's username.
+	 * @return the character file, or {@code null} if the player has none.
+	 */
+	public static JsonObject load(String username) throws IOException {
+		JsonObject snapshot = pending.get(username);
+		if (snapshot != null) {
+			return snapshot;
+		}
+		// Prefer the file in the current format, unless one in the other
+		// format was saved more recently. It will be converted on the next
+		// save.
+		Path path = file(username, GameConstants.BINARY_PLAYER_SAVES);
+		Path other = file(username, !GameConstants.BINARY_PLAYER_SAVES);
+		if (!Files.exists(path) || Files.exists(other)
+				&& Files.getLastModifiedTime(other).compareTo(Files.getLastModifiedTime(path)) > 0) {
+			path = other;
+			if (!Files.exists(path)) {
+				return null;
+			}
+		}
+		byte[] data = Files.readAllBytes(path);
+		if (PlayerSaveCodec.isBinary(data)) {
+			return PlayerSaveCodec.decode(data);
+		}
+		return new JsonParser().parse(new String(data, StandardCharsets.UTF_8)).getAsJsonObject();
+	}
+
+	/**
+	 * Checks if a player has a character file, in either format.
+	 *
+	 * @param username
+	 *            the player's username.
+	 * @return true if the player has a character file.
+	 */
+	public static boolean exists(String username) {
+		return pending.containsKey(username) || Files.exists(file(username, false))
+				|| Files.exists(file(username, true));
+	}
+
+	/**
+	 * Gets the amount of players whose character files are waiting to be
+	 * written.
+	 */
+	public static int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * Stops the service after writing every pending save. Saves submitted
+	 * after this are written on the calling thread.
+	 */
+	public static void shutdown() {
+		running = false;
+		try {
+			worker.join(TimeUnit.SECONDS.toMillis(30));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		drain();
+	}
+
+	private static void run() {
+		List<String> batch = new ArrayList<>();
+		while (running || !queue.isEmpty()) {
+			try {
+				String username = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (username == null) {
+					continue;
+				}
+				batch.add(username);
+				queue.drainTo(batch);
+				for (String name : batch) {
+					write(name);
+				}
+			} catch (InterruptedException e) {
+				break;
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Writes every pending save on the calling thread.
+	 */
+	private static void drain() {
+		String username;
+		while ((username = queue.poll()) != null) {
+			write(username);
+		}
+	}
+
+	/**
+	 * Writes the pending snapshot of a player to their character file.
+	 *
+	 * @param username
+	 *            the player's username.
+	 */
+	private static synchronized void write(String username) {
+		JsonObject snapshot = pending.get(username);
+		if (snapshot == null) {
+			return;
+		}
+		try {
+			boolean binary = GameConstants.BINARY_PLAYER_SAVES;
+			byte[] data = binary ? PlayerSaveCodec.encode(snapshot)
+					: GSON.toJson(snapshot).getBytes(StandardCharsets.UTF_8);
+			Files.createDirectories(DIRECTORY);
+			Path target = file(username, binary);
+			Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+			Files.write(temp, data);
+			try {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			// Remove the file in the other format, so it can't be loaded in
+			// place of this one if the format is switched back.
+			Files.deleteIfExists(file(username, !binary));
+		} catch (Exception e) {
+			Elvarg.getLogger().log(Level.WARNING, "An error has occured while saving a character file!", e);
+		}
+
+		// If the player was saved again while we were writing, their
+		// username is no longer queued, so queue it again.
+		if (!pending.remove(username, snapshot)) {
+			queue.offer(username);
+		}
+	}
+
+	/**
+	 * Gets the character file of a player.
+	 */
+	private static Path file(String username, boolean binary) {
+		return DIRECTORY.resolve(username + (binary ? BINARY_EXTENSION : JSON_EXTENSION));
+	}
+}
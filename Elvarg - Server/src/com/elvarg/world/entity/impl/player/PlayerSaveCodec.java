@@ -0,0 +1,247 @@
+package com.elvarg.world.entity.impl.player;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map.Entry;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * A compact, versioned binary encoding of character files.
+ * <p>
+ * The codec encodes the same tree of named properties which
+ * {@link PlayerSaving} writes as JSON, so a character file can be converted
+ * between both formats without losing anything, and adding or removing a
+ * property does not require a new version. Numbers are written as
+ * variable-length integers and property names are written once per object.
+ * <p>
+ * Can be run from the command line to convert character files for tooling:
+ * {@code export <file.dat> <file.json>} or {@code import <file.json> <file.dat>}.
+ */
+public final class PlayerSaveCodec {
+
+	/**
+	 * The magic number every binary character file starts with.
+	 */
+	private static final int MAGIC = 0x454C5653; // "ELVS"
+
+	/**
+	 * The current version of the binary format.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * The tags which identify the type of an encoded element.
+	 */
+	private static final int NULL = 0, FALSE = 1, TRUE = 2, INTEGER = 3, DECIMAL = 4, STRING = 5, ARRAY = 6,
+			OBJECT = 7;
+
+	/**
+	 * Checks if the given data is a binary character file.
+	 *
+	 * @param data
+	 *            the file's data.
+	 * @return true if the data starts with the binary format's magic number.
+	 */
+	public static boolean isBinary(byte[] data) {
+		return data.length >= 4
+				&& ((data[0] & 0xFF) << 24 | (data[1] & 0xFF) << 16 | (data[2] & 0xFF) << 8 | data[3] & 0xFF) == MAGIC;
+	}
+
+	/**
+	 * Encodes a character file.
+	 *
+	 * @param object
+	 *            the character file, as written by {@link PlayerSaving}.
+	 * @return the encoded data.
+	 */
+	public static byte[] encode(JsonObject object) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		write(out, object);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decodes a character file.
+	 *
+	 * @param data
+	 *            the encoded data.
+	 * @return the character file.
+	 * @throws IOException
+	 *             if the data is not a binary character file, or was written
+	 *             by a newer version of the format.
+	 */
+	public static JsonObject decode(byte[] data) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a binary character file.");
+		}
+		int version = in.readUnsignedByte();
+		if (version > VERSION) {
+			throw new IOException("Unsupported character file version " + version + ".");
+		}
+		JsonElement element = read(in);
+		if (!element.isJsonObject()) {
+			throw new IOException("Malformed character file.");
+		}
+		return element.getAsJsonObject();
+	}
+
+	private static void write(DataOutputStream out, JsonElement element) throws IOException {
+		if (element == null || element.isJsonNull()) {
+			out.writeByte(NULL);
+		} else if (element.isJsonObject()) {
+			JsonObject object = element.getAsJsonObject();
+			out.writeByte(OBJECT);
+			writeVarLong(out, object.entrySet().size());
+			for (Entry<String, JsonElement> entry : object.entrySet()) {
+				writeString(out, entry.getKey());
+				write(out, entry.getValue());
+			}
+		} else if (element.isJsonArray()) {
+			JsonArray array = element.getAsJsonArray();
+			out.writeByte(ARRAY);
+			writeVarLong(out, array.size());
+			for (JsonElement e : array) {
+				write(out, e);
+			}
+		} else {
+			JsonPrimitive primitive = element.getAsJsonPrimitive();
+			if (primitive.isBoolean()) {
+				out.writeByte(primitive.getAsBoolean() ? TRUE : FALSE);
+			} else if (primitive.isNumber()) {
+				Long value = toLong(primitive.getAsString());
+				if (value != null) {
+					long l = value;
+					out.writeByte(INTEGER);
+					writeVarLong(out, (l << 1) ^ (l >> 63));
+				} else {
+					out.writeByte(DECIMAL);
+					out.writeDouble(primitive.getAsDouble());
+				}
+			} else {
+				out.writeByte(STRING);
+				writeString(out, primitive.getAsString());
+			}
+		}
+	}
+
+	private static JsonElement read(DataInputStream in) throws IOException {
+		int tag = in.readUnsignedByte();
+		switch (tag) {
+		case NULL:
+			return JsonNull.INSTANCE;
+		case FALSE:
+			return new JsonPrimitive(false);
+		case TRUE:
+			return new JsonPrimitive(true);
+		case INTEGER:
+			long zigzag = readVarLong(in);
+			return new JsonPrimitive((zigzag >>> 1) ^ -(zigzag & 1));
+		case DECIMAL:
+			return new JsonPrimitive(in.readDouble());
+		case STRING:
+			return new JsonPrimitive(readString(in));
+		case ARRAY:
+			int length = (int) readVarLong(in);
+			JsonArray array = new JsonArray();
+			for (int i = 0; i < length; i++) {
+				array.add(read(in));
+			}
+			return array;
+		case OBJECT:
+			int size = (int) readVarLong(in);
+			JsonObject object = new JsonObject();
+			for (int i = 0; i < size; i++) {
+				String key = readString(in);
+				object.add(key, read(in));
+			}
+			return object;
+		default:
+			throw new IOException("Unknown element tag " + tag + ".");
+		}
+	}
+
+	/**
+	 * Parses a number as a long, if it can be stored as one without losing
+	 * anything.
+	 *
+	 * @return the number, or {@code null} if it has a fraction, an exponent
+	 *         or is out of range.
+	 */
+	private static Long toLong(String value) {
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		writeVarLong(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[(int) readVarLong(in)];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable-length integer.");
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 3 || !(args[0].equals("export") || args[0].equals("import"))) {
+			System.out.println("Usage: export <file.dat> <file.json> | import <file.json> <file.dat>");
+			return;
+		}
+		Path from = Paths.get(args[1]);
+		Path to = Paths.get(args[2]);
+		if (args[0].equals("export")) {
+			JsonObject object = decode(Files.readAllBytes(from));
+			Files.write(to, new GsonBuilder().setPrettyPrinting().create().toJson(object)
+					.getBytes(StandardCharsets.UTF_8));
+		} else {
+			JsonObject object = new JsonParser()
+					.parse(new String(Files.readAllBytes(from), StandardCharsets.UTF_8)).getAsJsonObject();
+			Files.write(to, encode(object));
+		}
+		System.out.println("Converted " + from + " to " + to + ".");
+	}
+}
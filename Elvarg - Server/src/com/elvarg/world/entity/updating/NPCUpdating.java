@@ -1,6 +1,8 @@
 package com.elvarg.world.entity.updating;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import com.elvarg.net.packet.ByteOrder;
 import com.elvarg.net.packet.PacketBuilder;
@@ -15,6 +17,9 @@ import com.elvarg.world.model.Flag;
 import com.elvarg.world.model.Position;
 import com.elvarg.world.model.UpdateFlag;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+
 /**
  * Represents a player's npc updating task, which loops through all local npcs
  * and updates their masks according to their current attributes.
@@ -24,19 +29,43 @@ import com.elvarg.world.model.UpdateFlag;
 
 public class NPCUpdating {
 
+	/**
+	 * The amount of tiles around a player that are searched for new local
+	 * npcs.
+	 */
+	private static final int VIEW_DISTANCE = 15;
+
+	/**
+	 * A reusable list, per update thread, of the npcs found near the player
+	 * being updated.
+	 */
+	private static final ThreadLocal<List<NPC>> NEARBY_NPCS = ThreadLocal.withInitial(ArrayList::new);
+
+	/**
+	 * The reusable npc updating packet, per update thread.
+	 */
+	private static final ThreadLocal<PacketBuilder> PACKET = ThreadLocal
+			.withInitial(() -> new PacketBuilder(65, PooledByteBufAllocator.DEFAULT));
+
+	/**
+	 * The reusable update block buffer, per update thread.
+	 */
+	private static final ThreadLocal<PacketBuilder> UPDATE_BLOCK = ThreadLocal
+			.withInitial(() -> new PacketBuilder(-1, PooledByteBufAllocator.DEFAULT));
+
 	/**
 	 * Handles the actual npc updating for the associated player.
 	 * 
 	 * @return The NPCUpdating instance.
 	 */
 	public static void update(Player player) {
-		PacketBuilder update = new PacketBuilder();
-		PacketBuilder packet = new PacketBuilder(65);
+		PacketBuilder update = UPDATE_BLOCK.get().clear();
+		PacketBuilder packet = PACKET.get().clear();
 		packet.initializeAccess(AccessType.BIT);
 		packet.putBits(8, player.getLocalNpcs().size());
 		for (Iterator<NPC> npcIterator = player.getLocalNpcs().iterator(); npcIterator.hasNext();) {
 			NPC npc = npcIterator.next();
-			if (World.getNpcs().get(npc.getIndex()) != null && npc.isVisible()
+			if (World.getNpcs().get(npc.getIndex()) == npc && npc.isVisible()
 					&& player.getPosition().isWithinDistance(npc.getPosition()) && !npc.isNeedsPlacement()) {
 				updateMovement(npc, packet);
 				if (npc.getUpdateFlag().isUpdateRequired()) {
@@ -45,17 +74,22 @@ public class NPCUpdating {
 			} else {
 				// player.getNpcFacesUpdated().remove(npc);
 				npcIterator.remove();
+				player.getLocalNpcIndices().clear(npc.getIndex());
 				packet.putBits(1, 1);
 				packet.putBits(2, 3);
 			}
 		}
-		for (NPC npc : World.getNpcs()) {
+		List<NPC> nearby = NEARBY_NPCS.get();
+		nearby.clear();
+		World.getNpcs().getChunkIndex().collect(player.getPosition(), VIEW_DISTANCE, nearby);
+		for (NPC npc : nearby) {
 			if (player.getLocalNpcs().size() >= 79) // Originally 255
 				break;
-			if (npc == null || player.getLocalNpcs().contains(npc) || !npc.isVisible() || npc.isNeedsPlacement())
+			if (player.getLocalNpcIndices().get(npc.getIndex()) || !npc.isVisible() || npc.isNeedsPlacement())
 				continue;
 			if (npc.getPosition().isWithinDistance(player.getPosition())) {
 				player.getLocalNpcs().add(npc);
+				player.getLocalNpcIndices().set(npc.getIndex());
 				addNPC(player, npc, packet);
 				if (npc.getUpdateFlag().isUpdateRequired()) {
 					appendUpdates(npc, update);
@@ -69,7 +103,7 @@ public class NPCUpdating {
 		} else {
 			packet.initializeAccess(AccessType.BYTE);
 		}
-		player.getSession().writeAndFlush(packet);
+		player.getSession().writeAndFlushCopy(packet);
 	}
 
 	/**
@@ -124,15 +158,38 @@ public class NPCUpdating {
 	}
 
 	/**
-	 * Appends a mask update for {@code npc}.
+	 * Appends a mask update for {@code npc}. The blocks are encoded once per
+	 * cycle and then copied from the npc's {@link UpdateBlockCache}.
+	 * 
+	 * @param npc
+	 *            The npc to update masks for.
+	 * @param builder
+	 *            The packet builder to write information on.
+	 */
+	private static void appendUpdates(NPC npc, PacketBuilder builder) {
+		final UpdateBlockCache cache = npc.getUpdateBlockCache();
+		ByteBuf block;
+		synchronized (cache) {
+			block = cache.get(false);
+			if (block == null) {
+				PacketBuilder encoded = new PacketBuilder(-1, PooledByteBufAllocator.DEFAULT);
+				encodeUpdates(npc, encoded);
+				block = encoded.buffer();
+				cache.set(false, block);
+			}
+		}
+		builder.writeBuffer(block, block.readerIndex(), block.readableBytes());
+	}
+
+	/**
+	 * Encodes a mask update for {@code npc}.
 	 * 
 	 * @param npc
 	 *            The npc to update masks for.
 	 * @param builder
 	 *            The packet builder to write information on.
-	 * @return The NPCUpdating instance.
 	 */
-	private static void appendUpdates(NPC npc, PacketBuilder block) {
+	private static void encodeUpdates(NPC npc, PacketBuilder block) {
 		int mask = 0;
 		UpdateFlag flag = npc.getUpdateFlag();
 		if (flag.flagged(Flag.ANIMATION) && npc.getAnimation() != null) {
@@ -263,6 +320,7 @@ public class NPCUpdating {
 	 */
 	public static void resetFlags(NPC npc) {
 		npc.getUpdateFlag().reset();
+		npc.getUpdateBlockCache().clear();
 		npc.setForcedChat("");
 		npc.setNeedsPlacement(false);
 		npc.setResetMovementQueue(false);
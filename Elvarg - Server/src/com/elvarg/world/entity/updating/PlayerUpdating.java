@@ -1,6 +1,8 @@
 package com.elvarg.world.entity.updating;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import com.elvarg.cache.impl.definitions.ItemDefinition;
 import com.elvarg.net.packet.ByteOrder;
@@ -16,9 +18,13 @@ import com.elvarg.world.model.Direction;
 import com.elvarg.world.model.Flag;
 import com.elvarg.world.model.Position;
 import com.elvarg.world.model.Skill;
+import com.elvarg.world.model.Item;
 import com.elvarg.world.model.UpdateFlag;
 import com.elvarg.world.model.container.impl.Equipment;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+
 /**
  * Represents the associated player's player updating.
  * 
@@ -32,6 +38,36 @@ public class PlayerUpdating {
 	 */
 	private static final int MAX_NEW_PLAYERS_PER_CYCLE = 25;
 
+	/**
+	 * The amount of tiles around a player that are searched for new local
+	 * players.
+	 */
+	private static final int VIEW_DISTANCE = 15;
+
+	/**
+	 * A reusable list, per update thread, of the players found near the player
+	 * being updated.
+	 */
+	private static final ThreadLocal<List<Player>> NEARBY_PLAYERS = ThreadLocal.withInitial(ArrayList::new);
+
+	/**
+	 * The reusable player updating packet, per update thread.
+	 */
+	private static final ThreadLocal<PacketBuilder> PACKET = ThreadLocal
+			.withInitial(() -> new PacketBuilder(81, PooledByteBufAllocator.DEFAULT));
+
+	/**
+	 * The reusable update block buffer, per update thread.
+	 */
+	private static final ThreadLocal<PacketBuilder> UPDATE_BLOCK = ThreadLocal
+			.withInitial(() -> new PacketBuilder(-1, PooledByteBufAllocator.DEFAULT));
+
+	/**
+	 * The reusable appearance properties buffer, per update thread.
+	 */
+	private static final ThreadLocal<PacketBuilder> APPEARANCE_BLOCK = ThreadLocal
+			.withInitial(() -> new PacketBuilder(-1, PooledByteBufAllocator.DEFAULT));
+
 	/**
 	 * Loops through the associated player's {@code localPlayer} list and
 	 * updates them.
@@ -40,15 +76,15 @@ public class PlayerUpdating {
 	 */
 
 	public static void update(final Player player) {
-		PacketBuilder update = new PacketBuilder();
-		PacketBuilder packet = new PacketBuilder(81);
+		PacketBuilder update = UPDATE_BLOCK.get().clear();
+		PacketBuilder packet = PACKET.get().clear();
 		packet.initializeAccess(AccessType.BIT);
 		updateMovement(player, packet);
 		appendUpdates(player, update, player, false, true);
 		packet.putBits(8, player.getLocalPlayers().size());
 		for (Iterator<Player> playerIterator = player.getLocalPlayers().iterator(); playerIterator.hasNext();) {
 			Player otherPlayer = playerIterator.next();
-			if (World.getPlayers().get(otherPlayer.getIndex()) != null
+			if (World.getPlayers().get(otherPlayer.getIndex()) == otherPlayer
 					&& otherPlayer.getPosition().isWithinDistance(player.getPosition())
 					&& !otherPlayer.isNeedsPlacement()) {
 				updateOtherPlayerMovement(packet, otherPlayer);
@@ -57,19 +93,24 @@ public class PlayerUpdating {
 				}
 			} else {
 				playerIterator.remove();
+				player.getLocalPlayerIndices().clear(otherPlayer.getIndex());
 				packet.putBits(1, 1);
 				packet.putBits(2, 3);
 			}
 		}
 		int playersAdded = 0;
 
-		for (Player otherPlayer : World.getPlayers()) {
+		List<Player> nearby = NEARBY_PLAYERS.get();
+		nearby.clear();
+		World.getPlayers().getChunkIndex().collect(player.getPosition(), VIEW_DISTANCE, nearby);
+		for (Player otherPlayer : nearby) {
 			if (player.getLocalPlayers().size() >= 79 || playersAdded > MAX_NEW_PLAYERS_PER_CYCLE)
 				break;
-			if (otherPlayer == null || otherPlayer == player || player.getLocalPlayers().contains(otherPlayer)
+			if (otherPlayer == player || player.getLocalPlayerIndices().get(otherPlayer.getIndex())
 					|| !otherPlayer.getPosition().isWithinDistance(player.getPosition()))
 				continue;
 			player.getLocalPlayers().add(otherPlayer);
+			player.getLocalPlayerIndices().set(otherPlayer.getIndex());
 			addPlayer(player, otherPlayer, packet);
 			appendUpdates(player, update, otherPlayer, true, false);
 			playersAdded++;
@@ -82,7 +123,7 @@ public class PlayerUpdating {
 		} else {
 			packet.initializeAccess(AccessType.BYTE);
 		}
-		player.getSession().writeAndFlush(packet);
+		player.getSession().writeAndFlushCopy(packet);
 	}
 
 	/**
@@ -305,7 +346,9 @@ public class PlayerUpdating {
 	}
 
 	/**
-	 * Appends a player's update mask blocks.
+	 * Appends a player's update mask blocks. Blocks which look the same to
+	 * every viewer are encoded once per cycle and then copied from the
+	 * target's {@link UpdateBlockCache}.
 	 * 
 	 * @param builder
 	 *            The packet builder to write information on.
@@ -321,12 +364,56 @@ public class PlayerUpdating {
 			boolean noChat) {
 		if (!target.getUpdateFlag().isUpdateRequired() && !updateAppearance)
 			return;
-		/*
-		 * if (player.getCachedUpdateBlock() != null && !player.equals(target)
-		 * && !updateAppearance && !noChat) {
-		 * builder.putBytes(player.getCachedUpdateBlock()); return; }
-		 */
-		// synchronized (target) {
+		if (noChat || isViewerSpecific(player, target)) {
+			encodeUpdates(player, builder, target, updateAppearance, noChat);
+			return;
+		}
+		final UpdateBlockCache cache = target.getUpdateBlockCache();
+		ByteBuf block;
+		synchronized (cache) {
+			block = cache.get(updateAppearance);
+			if (block == null) {
+				PacketBuilder encoded = new PacketBuilder(-1, PooledByteBufAllocator.DEFAULT);
+				encodeUpdates(player, encoded, target, updateAppearance, false);
+				block = encoded.buffer();
+				cache.set(updateAppearance, block);
+			}
+		}
+		builder.writeBuffer(block, block.readerIndex(), block.readableBytes());
+	}
+
+	/**
+	 * Checks if {@code target}'s update blocks depend on who is viewing them,
+	 * in which case they cannot be shared between viewers.
+	 * 
+	 * @param player
+	 *            The player viewing the target.
+	 * @param target
+	 *            The player to update masks for.
+	 * @return {@code true} if the blocks must be encoded for this viewer only.
+	 */
+	private static boolean isViewerSpecific(Player player, Player target) {
+		final UpdateFlag flag = target.getUpdateFlag();
+		if (flag.flagged(Flag.FORCED_MOVEMENT) && target.getForceMovement() != null) {
+			return true;
+		}
+		return flag.flagged(Flag.CHAT) && player.getRelations().getIgnoreList().contains(target.getLongUsername());
+	}
+
+	/**
+	 * Encodes a player's update mask blocks.
+	 * 
+	 * @param builder
+	 *            The packet builder to write information on.
+	 * @param target
+	 *            The player to update masks for.
+	 * @param updateAppearance
+	 *            Update the player's appearance without the flag being set?
+	 * @param noChat
+	 *            Do not allow player to chat?
+	 */
+	private static void encodeUpdates(Player player, PacketBuilder builder, Player target, boolean updateAppearance,
+			boolean noChat) {
 		final UpdateFlag flag = target.getUpdateFlag();
 		int mask = 0;
 		if (flag.flagged(Flag.GRAPHIC) && target.getGraphic() != null) {
@@ -386,7 +473,7 @@ public class PlayerUpdating {
 			updateEntityInteraction(builder, target);
 		}
 		if (flag.flagged(Flag.APPEARANCE) || updateAppearance) {
-			updateAppearance(player, builder, target);
+			updateAppearance(builder, target);
 		}
 		if (flag.flagged(Flag.FACE_POSITION)) {
 			updateFacingPosition(builder, target);
@@ -397,11 +484,6 @@ public class PlayerUpdating {
 		if (flag.flagged(Flag.DOUBLE_HIT)) {
 			updateDoubleHit(builder, target);
 		}
-		/*
-		 * if (!player.equals(target) && !updateAppearance && !noChat) {
-		 * player.setCachedUpdateBlock(cachedBuffer.buffer()); }
-		 */
-		// }
 	}
 
 	/**
@@ -568,10 +650,10 @@ public class PlayerUpdating {
 	 *            The player to update appearance for.
 	 * @return The PlayerUpdating instance.
 	 */
-	private static void updateAppearance(Player player, PacketBuilder out, Player target) {
+	private static void updateAppearance(PacketBuilder out, Player target) {
 		Appearance appearance = target.getAppearance();
 		Equipment equipment = target.getEquipment();
-		PacketBuilder properties = new PacketBuilder();
+		PacketBuilder properties = APPEARANCE_BLOCK.get().clear();
 
 		properties.put(appearance.isMale() ? 0 : 1);
 
@@ -584,81 +666,78 @@ public class PlayerUpdating {
 		// Some sort of headhint (arrow over head)
 		properties.put(0);
 
-		if (player.getNpcTransformationId() <= 0) {
-			int[] equip = new int[equipment.capacity()];
-			for (int i = 0; i < equipment.capacity(); i++) {
-				equip[i] = equipment.getItems()[i].getId();
-			}
-			if (equip[Equipment.HEAD_SLOT] > -1) {
-				properties.putShort(0x200 + equip[Equipment.HEAD_SLOT]);
+		if (target.getNpcTransformationId() <= 0) {
+			final Item[] items = equipment.getItems();
+			if (items[Equipment.HEAD_SLOT].getId() > -1) {
+				properties.putShort(0x200 + items[Equipment.HEAD_SLOT].getId());
 			} else {
 				properties.put(0);
 			}
-			if (equip[Equipment.CAPE_SLOT] > -1) {
-				properties.putShort(0x200 + equip[Equipment.CAPE_SLOT]);
+			if (items[Equipment.CAPE_SLOT].getId() > -1) {
+				properties.putShort(0x200 + items[Equipment.CAPE_SLOT].getId());
 			} else {
 				properties.put(0);
 			}
-			if (equip[Equipment.AMULET_SLOT] > -1) {
-				properties.putShort(0x200 + equip[Equipment.AMULET_SLOT]);
+			if (items[Equipment.AMULET_SLOT].getId() > -1) {
+				properties.putShort(0x200 + items[Equipment.AMULET_SLOT].getId());
 			} else {
 				properties.put(0);
 			}
-			if (equip[Equipment.WEAPON_SLOT] > -1) {
-				properties.putShort(0x200 + equip[Equipment.WEAPON_SLOT]);
+			if (items[Equipment.WEAPON_SLOT].getId() > -1) {
+				properties.putShort(0x200 + items[Equipment.WEAPON_SLOT].getId());
 			} else {
 				properties.put(0);
 			}
-			if (equip[Equipment.BODY_SLOT] > -1) {
-				properties.putShort(0x200 + equip[Equipment.BODY_SLOT]);
+			if (items[Equipment.BODY_SLOT].getId() > -1) {
+				properties.putShort(0x200 + items[Equipment.BODY_SLOT].getId());
 			} else {
 				properties.putShort(0x100 + appearance.getLook()[Appearance.CHEST]);
 			}
-			if (equip[Equipment.SHIELD_SLOT] > -1) {
-				properties.putShort(0x200 + equip[Equipment.SHIELD_SLOT]);
+			if (items[Equipment.SHIELD_SLOT].getId() > -1) {
+				properties.putShort(0x200 + items[Equipment.SHIELD_SLOT].getId());
 			} else {
 				properties.put(0);
 			}
 
-			if (ItemDefinition.forId(equip[Equipment.BODY_SLOT]).isFullBody()) {
+			if (ItemDefinition.forId(items[Equipment.BODY_SLOT].getId()).isFullBody()) {
 				properties.put(0);
 			} else {
 				properties.putShort(0x100 + appearance.getLook()[Appearance.ARMS]);
 			}
 
-			if (equip[Equipment.LEG_SLOT] > -1) {
-				properties.putShort(0x200 + equip[Equipment.LEG_SLOT]);
+			if (items[Equipment.LEG_SLOT].getId() > -1) {
+				properties.putShort(0x200 + items[Equipment.LEG_SLOT].getId());
 			} else {
 				properties.putShort(0x100 + appearance.getLook()[Appearance.LEGS]);
 			}
 
-			if (ItemDefinition.forId(equip[Equipment.HEAD_SLOT]).isFullHelm()
-					|| ItemDefinition.forId(equip[Equipment.HEAD_SLOT]).isMedHelm()
-					|| ItemDefinition.forId(equip[Equipment.CAPE_SLOT]).isHoodedCape()) {
+			if (ItemDefinition.forId(items[Equipment.HEAD_SLOT].getId()).isFullHelm()
+					|| ItemDefinition.forId(items[Equipment.HEAD_SLOT].getId()).isMedHelm()
+					|| ItemDefinition.forId(items[Equipment.CAPE_SLOT].getId()).isHoodedCape()) {
 				properties.put(0);
 			} else {
 				properties.putShort(0x100 + appearance.getLook()[Appearance.HEAD]);
 			}
-			if (equip[Equipment.HANDS_SLOT] > -1) {
-				properties.putShort(0x200 + equip[Equipment.HANDS_SLOT]);
+			if (items[Equipment.HANDS_SLOT].getId() > -1) {
+				properties.putShort(0x200 + items[Equipment.HANDS_SLOT].getId());
 			} else {
 				properties.putShort(0x100 + appearance.getLook()[Appearance.HANDS]);
 			}
-			if (equip[Equipment.FEET_SLOT] > -1) {
-				properties.putShort(0x200 + equip[Equipment.FEET_SLOT]);
+			if (items[Equipment.FEET_SLOT].getId() > -1) {
+				properties.putShort(0x200 + items[Equipment.FEET_SLOT].getId());
 			} else {
 				properties.putShort(0x100 + appearance.getLook()[Appearance.FEET]);
 			}
 			if (appearance.getLook()[Appearance.BEARD] <= 0 || !appearance.isMale()
-					|| ItemDefinition.forId(equip[Equipment.HEAD_SLOT]).isFullHelm()
-					|| ItemDefinition.forId(equip[Equipment.HEAD_SLOT]).isMask()) {
+					|| ItemDefinition.forId(items[Equipment.HEAD_SLOT].getId()).isFullHelm()
+					|| ItemDefinition.forId(items[Equipment.HEAD_SLOT].getId()).isMask()) {
 				properties.put(0);
 			} else {
 				properties.putShort(0x100 + appearance.getLook()[Appearance.BEARD]);
 			}
 		} else {
 			properties.putShort(-1);
-			properties.putShort(player.getNpcTransformationId());
+			properties.putShort(target.getNpcTransformationId());
 		}
 		properties.put(appearance.getLook()[Appearance.HAIR_COLOUR]);
 		properties.put(appearance.getLook()[Appearance.TORSO_COLOUR]);
@@ -697,6 +776,7 @@ public class PlayerUpdating {
 	 */
 	public static void resetFlags(Player player) {
 		player.getUpdateFlag().reset();
+		player.getUpdateBlockCache().clear();
 		player.setForcedChat("");
 		player.setRegionChange(false);
 		player.setResetMovementQueue(false);
@@ -705,7 +785,6 @@ public class PlayerUpdating {
 		player.setSecondaryDirection(Direction.NONE);
 		player.performAnimation(null);
 		player.performGraphic(null);
-		player.getSession().flush();
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+package com.elvarg.world.entity.updating;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Holds a character's update blocks once they have been encoded for the
+ * current cycle, so that every viewer who needs them can copy the same bytes
+ * instead of encoding them again.
+ * <p>
+ * Entries are filled in lazily during the parallel updating stage and are
+ * released when the character's flags are reset at the end of the cycle.
+ * Callers must synchronize on the cache while reading or filling an entry.
+ */
+public final class UpdateBlockCache {
+
+	/**
+	 * The encoded blocks for the character's flagged masks.
+	 */
+	private ByteBuf block;
+
+	/**
+	 * The encoded blocks for the character's flagged masks, with the
+	 * appearance block forced. This is what newly added viewers receive.
+	 */
+	private ByteBuf appearanceBlock;
+
+	/**
+	 * Gets a cached block.
+	 * 
+	 * @param forcedAppearance
+	 *            Get the entry with a forced appearance block?
+	 * @return The cached block, or {@code null} if it has not been encoded this
+	 *         cycle.
+	 */
+	public ByteBuf get(boolean forcedAppearance) {
+		return forcedAppearance ? appearanceBlock : block;
+	}
+
+	/**
+	 * Stores an encoded block. The cache takes ownership of the buffer and
+	 * releases it in {@link #clear()}.
+	 * 
+	 * @param forcedAppearance
+	 *            Is this the entry with a forced appearance block?
+	 * @param buffer
+	 *            The encoded block.
+	 */
+	public void set(boolean forcedAppearance, ByteBuf buffer) {
+		if (forcedAppearance) {
+			appearanceBlock = buffer;
+		} else {
+			block = buffer;
+		}
+	}
+
+	/**
+	 * Releases all cached blocks.
+	 */
+	public synchronized void clear() {
+		if (block != null) {
+			block.release();
+			block = null;
+		}
+		if (appearanceBlock != null) {
+			appearanceBlock.release();
+			appearanceBlock = null;
+		}
+	}
+}
@@ -1,22 +1,137 @@
 package com.elvarg.world.grounditems;
 
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 
 import com.elvarg.cache.impl.definitions.ItemDefinition;
-import com.elvarg.engine.task.impl.GroundItemsTask;
 import com.elvarg.world.World;
 import com.elvarg.world.entity.impl.player.Player;
+import com.elvarg.world.grounditems.GroundItemUpdate.Type;
 import com.elvarg.world.model.GroundItem;
 import com.elvarg.world.model.Item;
 import com.elvarg.world.model.Position;
 
+/**
+ * Handles the ground items.
+ * <p>
+ * Ground items are bucketed by the 8x8 chunk they are in, so looking up the
+ * items on a tile or around a player only visits the chunks involved. Every
+ * item is queued by the tick its timer ends, instead of every item being
+ * counted down every tick. Changes are not sent straight away, but gathered
+ * per chunk and sent once per tick, as a single packet per chunk, to the
+ * players whose map covers that chunk. Everything here runs on the game
+ * thread.
+ */
 public class GroundItemManager {
 
-	/*
-	 * Our list which holds all grounditems, used an CopyOnWriteArrayList to
-	 * prevent modification issues TODO: Change into a queue of some sort
+	/**
+	 * The size of the map a client has loaded, in tiles.
+	 */
+	private static final int VIEWPORT_SIZE = 104;
+
+	/**
+	 * Every listed grounditem, keyed by packed chunk coordinates.
+	 */
+	private static final Map<Integer, List<GroundItem>> chunks = new HashMap<>();
+
+	/**
+	 * The listed grounditems with a timer, soonest to expire first.
+	 */
+	private static final PriorityQueue<Expiry> expiries = new PriorityQueue<>();
+
+	/**
+	 * The changes which have not been sent yet, keyed by packed chunk
+	 * coordinates.
+	 */
+	private static final Map<Integer, List<GroundItemUpdate>> pending = new LinkedHashMap<>();
+
+	/**
+	 * The amount of times {@link #process()} has run.
+	 */
+	private static long tick;
+
+	/**
+	 * Handles the grounditems whose timer has ended, and sends the changes
+	 * made during this tick.
+	 */
+	public static void process() {
+		Expiry expiry;
+		while ((expiry = expiries.peek()) != null && expiry.tick <= tick) {
+			expiries.poll();
+			GroundItem gi = expiry.item;
+			if (!isListed(gi)) {
+				continue;
+			}
+			if (!gi.getItem().getDefinition().isTradeable()) {
+				gi.setGoGlobal(false);
+			}
+			if (gi.shouldGoGlobal() && !gi.isGlobal()) {
+				// Go global: the owner already sees it, everyone else
+				// needs it spawned.
+				queue(Type.REMOVE, gi, 0, false);
+				gi.setGlobalStatus(true);
+				gi.setGoGlobal(false);
+				gi.setShowDelay(gi.getGlobalTimer());
+				queue(Type.SPAWN, gi, 0, true);
+				schedule(gi);
+			} else {
+				remove(gi, true);
+			}
+		}
+		tick++;
+		flush();
+	}
+
+	/**
+	 * Sends every change which has not been sent yet.
 	 */
-	private static CopyOnWriteArrayList<GroundItem> groundItems = new CopyOnWriteArrayList<GroundItem>();
+	public static void flush() {
+		if (pending.isEmpty()) {
+			return;
+		}
+		final List<Player> viewers = new ArrayList<>();
+		for (Map.Entry<Integer, List<GroundItemUpdate>> entry : pending.entrySet()) {
+			final int key = entry.getKey();
+			final int z = key >>> 22;
+			final int chunkX = (key >> 11 & 0x7FF) << 3;
+			final int chunkY = (key & 0x7FF) << 3;
+			final List<GroundItemUpdate> updates = entry.getValue();
+
+			boolean personal = false;
+			for (GroundItemUpdate update : updates) {
+				if (update.getOwner() != null) {
+					personal = true;
+					break;
+				}
+			}
+
+			viewers.clear();
+			World.getPlayers().getChunkIndex().collect(new Position(chunkX, chunkY, z), VIEWPORT_SIZE, viewers);
+			for (Player p : viewers) {
+				if (!canSee(p, chunkX, chunkY, z)) {
+					continue;
+				}
+				if (!personal) {
+					p.getPacketSender().sendGroundItemUpdates(chunkX, chunkY, updates);
+					continue;
+				}
+				List<GroundItemUpdate> visible = new ArrayList<>(updates.size());
+				for (GroundItemUpdate update : updates) {
+					if (update.getOwner() == null || update.getOwner().equals(p.getUsername())) {
+						visible.add(update);
+					}
+				}
+				if (!visible.isEmpty()) {
+					p.getPacketSender().sendGroundItemUpdates(chunkX, chunkY, visible);
+				}
+			}
+		}
+		pending.clear();
+	}
 
 	/**
 	 * Removes a grounditem from the world
@@ -28,26 +143,14 @@ public class GroundItemManager {
 	 */
 	public static void remove(GroundItem groundItem, boolean delistGItem) {
 		if (groundItem != null) {
-			if (groundItem.isGlobal()) {
-				for (Player p : World.getPlayers()) {
-					if (p == null)
-						continue;
-					if (p.getPosition().distanceToPoint(groundItem.getPosition().getX(),
-							groundItem.getPosition().getY()) <= 120)
-						p.getPacketSender().removeGroundItem(groundItem.getItem().getId(),
-								groundItem.getPosition().getX(), groundItem.getPosition().getY(),
-								groundItem.getItem().getAmount());
+			queue(Type.REMOVE, groundItem, 0, groundItem.isGlobal());
+			if (delistGItem) {
+				int key = key(groundItem.getPosition());
+				List<GroundItem> bucket = chunks.get(key);
+				if (bucket != null && bucket.remove(groundItem) && bucket.isEmpty()) {
+					chunks.remove(key);
 				}
-			} else {
-				Player person = World.getPlayerByName(groundItem.getOwner());
-				if (person != null && person.getPosition().distanceToPoint(groundItem.getPosition().getX(),
-						groundItem.getPosition().getY()) <= 120)
-					person.getPacketSender().removeGroundItem(groundItem.getItem().getId(),
-							groundItem.getPosition().getX(), groundItem.getPosition().getY(),
-							groundItem.getItem().getAmount());
 			}
-			if (delistGItem)
-				groundItems.remove(groundItem);
 		}
 	}
 
@@ -76,12 +179,13 @@ public class GroundItemManager {
 		if (ItemDefinition.forId(item.getId()).isStackable()) {
 			GroundItem it = getGroundItem(p, item, g.getPosition());
 			if (it != null) {
-				it.getItem().setAmount(it.getItem().getAmount() + g.getItem().getAmount() > Integer.MAX_VALUE
-						? Integer.MAX_VALUE : it.getItem().getAmount() + g.getItem().getAmount());
+				final int previous = it.getItem().getAmount();
+				final long amount = (long) previous + g.getItem().getAmount();
+				it.getItem().setAmount(amount > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) amount);
 				if (it.getItem().getAmount() <= 0)
 					remove(it, true);
 				else
-					it.setRefreshNeeded(true);
+					queue(Type.AMOUNT, it, previous, it.isGlobal());
 				return;
 			}
 		}
@@ -101,26 +205,13 @@ public class GroundItemManager {
 	 *            Should the grounditem be added to the arraylist?
 	 */
 	public static void add(GroundItem groundItem, boolean listGItem) {
-		if (groundItem.isGlobal()) {
-			for (Player p : World.getPlayers()) {
-				if (p == null)
-					continue;
-				if (groundItem.getPosition().getZ() == p.getPosition().getZ() && p.getPosition()
-						.distanceToPoint(groundItem.getPosition().getX(), groundItem.getPosition().getY()) <= 120)
-					p.getPacketSender().createGroundItem(groundItem.getItem().getId(), groundItem.getPosition().getX(),
-							groundItem.getPosition().getY(), groundItem.getItem().getAmount());
-			}
-		} else {
-			Player person = World.getPlayerByName(groundItem.getOwner());
-			if (person != null && groundItem.getPosition().getZ() == person.getPosition().getZ() && person.getPosition()
-					.distanceToPoint(groundItem.getPosition().getX(), groundItem.getPosition().getY()) <= 120)
-				person.getPacketSender().createGroundItem(groundItem.getItem().getId(), groundItem.getPosition().getX(),
-						groundItem.getPosition().getY(), groundItem.getItem().getAmount());
-		}
 		if (listGItem) {
-			groundItems.add(groundItem);
-			GroundItemsTask.fireTask();
+			// Callers may pass a character's position, which keeps moving.
+			groundItem.setPosition(groundItem.getPosition().copy());
+			chunks.computeIfAbsent(key(groundItem.getPosition()), k -> new ArrayList<>()).add(groundItem);
+			schedule(groundItem);
 		}
+		queue(Type.SPAWN, groundItem, 0, groundItem.isGlobal());
 	}
 
 	/**
@@ -141,7 +232,7 @@ public class GroundItemManager {
 			return;
 		}
 		GroundItem gt = getGroundItem(p, item, position);
-		if (gt == null || gt.hasBeenPickedUp() || !groundItems.contains(gt)) // last
+		if (gt == null || gt.hasBeenPickedUp() || !isListed(gt)) // last
 																				// one
 																				// isn't
 																				// needed,
@@ -178,19 +269,31 @@ public class GroundItemManager {
 	 *            The player who has changed region
 	 */
 	public static void onRegionChange(Player p) {
-		for (GroundItem gi : groundItems) {
-			if (gi == null)
-				continue;
-			p.getPacketSender().removeGroundItem(gi.getItem().getId(), gi.getPosition().getX(), gi.getPosition().getY(),
-					gi.getItem().getAmount());
-		}
-		for (GroundItem gi : groundItems) {
-			if (gi == null || p.getPosition().getZ() != gi.getPosition().getZ()
-					|| p.getPosition().distanceToPoint(gi.getPosition().getX(), gi.getPosition().getY()) > 120)
-				continue;
-			if (gi.isGlobal() || !gi.isGlobal() && gi.getOwner().equals(p.getUsername()))
-				p.getPacketSender().createGroundItem(gi.getItem().getId(), gi.getPosition().getX(),
-						gi.getPosition().getY(), gi.getItem().getAmount());
+		// Send what's pending first, so it isn't sent again on top of the
+		// items respawned below.
+		flush();
+
+		final Position region = p.getLastKnownRegion();
+		final int z = p.getPosition().getZ();
+		final List<GroundItemUpdate> updates = new ArrayList<>();
+		for (int chunkX = region.getRegionX(); chunkX < region.getRegionX() + VIEWPORT_SIZE / 8; chunkX++) {
+			for (int chunkY = region.getRegionY(); chunkY < region.getRegionY() + VIEWPORT_SIZE / 8; chunkY++) {
+				List<GroundItem> bucket = chunks.get(key(chunkX, chunkY, z));
+				if (bucket == null) {
+					continue;
+				}
+				updates.clear();
+				for (GroundItem gi : bucket) {
+					if (gi.isGlobal() || !gi.isGlobal() && gi.getOwner().equals(p.getUsername())) {
+						// Remove it first, in case the client still has it.
+						updates.add(new GroundItemUpdate(Type.REMOVE, gi, 0, true));
+						updates.add(new GroundItemUpdate(Type.SPAWN, gi, 0, true));
+					}
+				}
+				if (!updates.isEmpty()) {
+					p.getPacketSender().sendGroundItemUpdates(chunkX << 3, chunkY << 3, updates);
+				}
+			}
 		}
 	}
 
@@ -207,9 +310,11 @@ public class GroundItemManager {
 	 *         false
 	 */
 	public static GroundItem getGroundItem(Player p, Item item, Position position) {
-		for (GroundItem l : groundItems) {
-			if (l == null || l.getPosition().getZ() != position.getZ())
-				continue;
+		List<GroundItem> bucket = chunks.get(key(position));
+		if (bucket == null) {
+			return null;
+		}
+		for (GroundItem l : bucket) {
 			if (l.getPosition().equals(position) && l.getItem().getId() == item.getId()) {
 				if (l.isGlobal())
 					return l;
@@ -233,15 +338,110 @@ public class GroundItemManager {
 	 *            The owner of the grounditems to remove
 	 */
 	public static void clearArea(Position pos, String owner) {
-		for (GroundItem l : groundItems) {
-			if (l == null || l.getPosition().getZ() != pos.getZ())
-				continue;
+		List<GroundItem> bucket = chunks.get(key(pos));
+		if (bucket == null) {
+			return;
+		}
+		for (GroundItem l : new ArrayList<>(bucket)) {
 			if (l.getPosition().equals(pos) && l.getOwner().equals(owner))
 				remove(l, true);
 		}
 	}
 
-	public static CopyOnWriteArrayList<GroundItem> getGroundItems() {
+	/**
+	 * Returns every listed grounditem.
+	 * 
+	 * @return A copy of the grounditems list
+	 */
+	public static List<GroundItem> getGroundItems() {
+		List<GroundItem> groundItems = new ArrayList<>();
+		for (List<GroundItem> bucket : chunks.values()) {
+			groundItems.addAll(bucket);
+		}
 		return groundItems;
 	}
+
+	/**
+	 * Checks if a grounditem is listed.
+	 */
+	private static boolean isListed(GroundItem groundItem) {
+		List<GroundItem> bucket = chunks.get(key(groundItem.getPosition()));
+		return bucket != null && bucket.contains(groundItem);
+	}
+
+	/**
+	 * Queues a grounditem to be handled once its current timer ends. The
+	 * timer ends after {@link GroundItem#getShowDelay()} ticks have passed,
+	 * as it did when every item was counted down each tick.
+	 */
+	private static void schedule(GroundItem groundItem) {
+		if (!groundItem.shouldProcess() || groundItem.getShowDelay() < 0) {
+			return;
+		}
+		expiries.add(new Expiry(groundItem, tick + groundItem.getShowDelay() + 1));
+	}
+
+	/**
+	 * Queues a change to be sent at the end of the tick.
+	 * 
+	 * @param global
+	 *            may every player see the change, or only the item's owner?
+	 */
+	private static void queue(Type type, GroundItem groundItem, int previousAmount, boolean global) {
+		pending.computeIfAbsent(key(groundItem.getPosition()), k -> new ArrayList<>())
+				.add(new GroundItemUpdate(type, groundItem, previousAmount, global));
+	}
+
+	/**
+	 * Checks if the map a player has loaded covers a chunk.
+	 */
+	private static boolean canSee(Player p, int chunkX, int chunkY, int z) {
+		final Position region = p.getLastKnownRegion();
+		if (region == null || p.getPosition().getZ() != z) {
+			return false;
+		}
+		final int localX = chunkX - 8 * region.getRegionX();
+		final int localY = chunkY - 8 * region.getRegionY();
+		return localX >= 0 && localX < VIEWPORT_SIZE && localY >= 0 && localY < VIEWPORT_SIZE;
+	}
+
+	/**
+	 * Packs the chunk of the given position into a single key.
+	 */
+	private static int key(Position position) {
+		return key(position.getX() >> 3, position.getY() >> 3, position.getZ());
+	}
+
+	/**
+	 * Packs the given chunk coordinates into a single key.
+	 */
+	private static int key(int chunkX, int chunkY, int z) {
+		return (z & 0x1FF) << 22 | (chunkX & 0x7FF) << 11 | (chunkY & 0x7FF);
+	}
+
+	/**
+	 * A grounditem, along with the tick its timer ends.
+	 */
+	private static final class Expiry implements Comparable<Expiry> {
+
+		/**
+		 * The grounditem.
+		 */
+		private final GroundItem item;
+
+		/**
+		 * The tick the grounditem's timer ends.
+		 */
+		private final long tick;
+
+		private Expiry(GroundItem item, long tick) {
+			this.item = item;
+			this.tick = tick;
+		}
+
+		@Override
+		public int compareTo(Expiry other) {
+			return Long.compare(tick, other.tick);
+		}
+	}
 }
\ No newline at end of file
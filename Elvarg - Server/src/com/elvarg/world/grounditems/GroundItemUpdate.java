@@ -0,0 +1,105 @@
+package com.elvarg.world.grounditems;
+
+import com.elvarg.world.model.GroundItem;
+
+/**
+ * A change to a ground item, waiting to be sent to the players who can see
+ * the chunk it is in. The item's details are copied when the change is made,
+ * so changes are replayed exactly even if the item changes again before they
+ * are sent.
+ */
+public final class GroundItemUpdate {
+
+	/**
+	 * The kinds of change.
+	 */
+	public enum Type {
+		SPAWN, REMOVE, AMOUNT
+	}
+
+	/**
+	 * The kind of change.
+	 */
+	private final Type type;
+
+	/**
+	 * The id of the item.
+	 */
+	private final int id;
+
+	/**
+	 * The absolute x coordinate of the item.
+	 */
+	private final int x;
+
+	/**
+	 * The absolute y coordinate of the item.
+	 */
+	private final int y;
+
+	/**
+	 * The amount of the item before the change.
+	 */
+	private final int previousAmount;
+
+	/**
+	 * The amount of the item after the change.
+	 */
+	private final int amount;
+
+	/**
+	 * The only player who may see the change, or {@code null} if every player
+	 * may.
+	 */
+	private final String owner;
+
+	/**
+	 * Creates a new {@link GroundItemUpdate}.
+	 *
+	 * @param type
+	 *            the kind of change.
+	 * @param item
+	 *            the item which changed.
+	 * @param previousAmount
+	 *            the amount of the item before the change.
+	 * @param global
+	 *            may every player see the change, or only the item's owner?
+	 */
+	GroundItemUpdate(Type type, GroundItem item, int previousAmount, boolean global) {
+		this.type = type;
+		this.id = item.getItem().getId();
+		this.x = item.getPosition().getX();
+		this.y = item.getPosition().getY();
+		this.previousAmount = previousAmount;
+		this.amount = item.getItem().getAmount();
+		this.owner = global ? null : item.getOwner();
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	public int getPreviousAmount() {
+		return previousAmount;
+	}
+
+	public int getAmount() {
+		return amount;
+	}
+
+	public String getOwner() {
+		return owner;
+	}
+}
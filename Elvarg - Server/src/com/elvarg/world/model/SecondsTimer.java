@@ -78,6 +78,18 @@ public class SecondsTimer {
 		return seconds - secondsElapsed();
 	}
 
+	/**
+	 * Gets the amount of milliseconds remaining
+	 * before this timer has reached 0.
+	 * @return		The milliseconds remaining.
+	 */
+	public long millisecondsRemaining() {
+		if (seconds == 0) {
+			return 0;
+		}
+		return Math.max(0, seconds * 1000L - stopwatch.elapsed(TimeUnit.MILLISECONDS));
+	}
+
 	/**
 	 * Gets the amount of seconds that have elapsed
 	 * since the timer was started.
@@ -2,6 +2,7 @@ package com.elvarg.world.model.container;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -109,6 +110,51 @@ public abstract class ItemContainer {
 		return items;
 	}
 
+	/**
+	 * The slots of the container indexed by item id, or {@code null} if it
+	 * hasn't been built yet.
+	 */
+	private ItemSlotIndex index;
+
+	/**
+	 * Checks if the container indexes its slots by item id, so finding an item
+	 * or a free slot doesn't need to look through every slot. Containers whose
+	 * items are shared with other containers, such as shops, must not be
+	 * indexed.
+	 * 
+	 * @return The container is indexed.
+	 */
+	protected boolean indexed() {
+		return false;
+	}
+
+	/**
+	 * Gets the index of the container's slots, building it if needed.
+	 * 
+	 * @return The index, or {@code null} if the container isn't indexed.
+	 */
+	private ItemSlotIndex index() {
+		if (!indexed()) {
+			return null;
+		}
+		if (index == null || !index.covers(items)) {
+			index = new ItemSlotIndex(items);
+		}
+		return index;
+	}
+
+	/**
+	 * Updates the index after the item in a slot has changed.
+	 * 
+	 * @param slot
+	 *            The slot which changed.
+	 */
+	private void reindex(int slot) {
+		if (index != null && index.covers(items)) {
+			index.update(slot);
+		}
+	}
+
 	public Item[] getCopiedItems() {
 		Item[] it = new Item[items.length];
 		for (int i = 0; i < it.length; i++) {
@@ -170,6 +216,7 @@ public abstract class ItemContainer {
 	public ItemContainer setItem(int slot, Item item) {
 		items[slot] = item;
 		item.setSlot(slot);
+		reindex(slot);
 		return this;
 	}
 
@@ -215,6 +262,10 @@ public abstract class ItemContainer {
 	 * @return Total amount of free slots in container.
 	 */
 	public int getFreeSlots() {
+		ItemSlotIndex index = index();
+		if (index != null) {
+			return index.freeCount();
+		}
 		int space = 0;
 		for (Item item : items) {
 			if (item.getId() == -1) {
@@ -241,6 +292,10 @@ public abstract class ItemContainer {
 	 * @return Container contains item with the specified id.
 	 */
 	public boolean contains(int id) {
+		ItemSlotIndex index = index();
+		if (index != null && id > 0) {
+			return index.slots(id) != null;
+		}
 		for (Item items : this.items) {
 			if (items != null && items.getId() == id) {
 				return true;
@@ -279,6 +334,10 @@ public abstract class ItemContainer {
 	 * @return The next empty slot index.
 	 */
 	public int getEmptySlot() {
+		ItemSlotIndex index = index();
+		if (index != null) {
+			return index.firstFree();
+		}
 		for (int i = 0; i < capacity(); i++) {
 			if (items[i].getId() <= 0 || items[i].getAmount() <= 0) {
 				return i;
@@ -295,6 +354,10 @@ public abstract class ItemContainer {
 	 * @return The slot index the item is located in.
 	 */
 	public int getSlot(int id) {
+		ItemSlotIndex index = index();
+		if (index != null) {
+			return index.first(id);
+		}
 		for (int i = 0; i < capacity(); i++) {
 			if (items[i].getId() > 0 && items[i].getId() == id && items[i].getAmount() > 0) {
 				return i;
@@ -312,6 +375,16 @@ public abstract class ItemContainer {
 	 */
 	public int getAmount(int id) {
 		int totalAmount = 0;
+		ItemSlotIndex index = index();
+		if (index != null && id > 0) {
+			BitSet slots = index.slots(id);
+			if (slots != null) {
+				for (int slot = slots.nextSetBit(0); slot != -1; slot = slots.nextSetBit(slot + 1)) {
+					totalAmount += items[slot].getAmount();
+				}
+			}
+			return totalAmount;
+		}
 		for (Item item : items) {
 			if (item.getId() == id) {
 				totalAmount += item.getAmount();
@@ -339,6 +412,7 @@ public abstract class ItemContainer {
 	public ItemContainer resetItems() {
 		for (int i = 0; i < capacity(); i++) {
 			items[i] = new Item(-1, 0);
+			reindex(i);
 		}
 		return this;
 	}
@@ -557,6 +631,143 @@ public abstract class ItemContainer {
 		return this;
 	}
 
+	/**
+	 * Gets how many units of an item could be added to this container.
+	 *
+	 * @param id
+	 *            The id of the item.
+	 * @return The amount of units there is room for.
+	 */
+	public int getRoomFor(int id) {
+		final boolean stacks = ItemDefinition.forId(id).isStackable() || stackType() == StackType.STACKS;
+		ItemSlotIndex index = index();
+		if (index != null) {
+			int slot = stacks ? index.first(id) : -1;
+			if (slot != -1) {
+				return Integer.MAX_VALUE - items[slot].getAmount();
+			}
+			int free = index.freeCount();
+			return stacks ? (free > 0 ? Integer.MAX_VALUE : 0) : free;
+		}
+		int free = 0;
+		for (int i = 0; i < capacity(); i++) {
+			Item item = items[i];
+			if (item.getId() <= 0 || item.getAmount() <= 0) {
+				free++;
+			} else if (stacks && item.getId() == id) {
+				return Integer.MAX_VALUE - item.getAmount();
+			}
+		}
+		if (stacks) {
+			return free > 0 ? Integer.MAX_VALUE : 0;
+		}
+		return free;
+	}
+
+	/**
+	 * Adds as many units of an item as there is room for, in a single pass
+	 * over the container. Unlike {@link #add(Item, boolean)}, nothing is sent
+	 * to the player and the container isn't refreshed.
+	 *
+	 * @param id
+	 *            The id of the item.
+	 * @param amount
+	 *            The amount of units to add.
+	 * @return The amount of units added.
+	 */
+	public int addUnits(int id, int amount) {
+		if (id <= 0 || amount <= 0) {
+			return 0;
+		}
+		if (ItemDefinition.forId(id).isStackable() || stackType() == StackType.STACKS) {
+			int empty = -1;
+			for (int i = 0; i < capacity(); i++) {
+				Item item = items[i];
+				if (item.getId() <= 0 || item.getAmount() <= 0) {
+					if (empty == -1) {
+						empty = i;
+					}
+				} else if (item.getId() == id) {
+					int added = Math.min(amount, Integer.MAX_VALUE - item.getAmount());
+					item.setAmount(item.getAmount() + added);
+					reindex(i);
+					return added;
+				}
+			}
+			if (empty == -1) {
+				return 0;
+			}
+			items[empty].setId(id);
+			items[empty].setAmount(amount);
+			items[empty].setSlot(empty);
+			reindex(empty);
+			return amount;
+		}
+		int added = 0;
+		for (int i = 0; i < capacity() && added < amount; i++) {
+			Item item = items[i];
+			if (item.getId() <= 0 || item.getAmount() <= 0) {
+				item.setId(id);
+				item.setAmount(1);
+				item.setSlot(i);
+				reindex(i);
+				added++;
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * Deletes up to the given amount of units of an item, in a single pass
+	 * over the container. The container isn't refreshed.
+	 *
+	 * @param id
+	 *            The id of the item.
+	 * @param amount
+	 *            The amount of units to delete.
+	 * @return The amount of units deleted.
+	 */
+	public int deleteUnits(int id, int amount) {
+		int deleted = 0;
+		for (int i = 0; i < capacity() && deleted < amount; i++) {
+			Item item = items[i];
+			if (item.getId() != id || item.getAmount() <= 0) {
+				continue;
+			}
+			int taken = Math.min(amount - deleted, item.getAmount());
+			item.setAmount(item.getAmount() - taken);
+			if (item.getAmount() < 1) {
+				item.setId(-1);
+				item.setAmount(0);
+			}
+			item.setSlot(i);
+			reindex(i);
+			deleted += taken;
+		}
+		return deleted;
+	}
+
+	/**
+	 * Moves up to the given amount of units of an item to another container
+	 * at once, limited by how many this container holds and how many the
+	 * other container has room for. Neither container is refreshed.
+	 *
+	 * @param to
+	 *            The container to move the item to.
+	 * @param id
+	 *            The id of the item.
+	 * @param amount
+	 *            The amount of units to move.
+	 * @return The amount of units moved.
+	 */
+	public int transfer(ItemContainer to, int id, int amount) {
+		int moving = Math.min(Math.min(amount, getAmount(id)), to.getRoomFor(id));
+		if (moving <= 0) {
+			return 0;
+		}
+		return to.addUnits(id, deleteUnits(id, moving));
+	}
+
 	public ItemContainer addItems(Item[] items, boolean refresh) {
 		if (items == null)
 			return this;
@@ -649,6 +860,7 @@ public abstract class ItemContainer {
 				items[slot].setAmount(items[slot].getAmount() + item.getAmount());
 				items[slot].setSlot(slot);
 			}
+			reindex(slot);
 		} else {
 			int amount = item.getAmount();
 			while (amount > 0) {
@@ -665,7 +877,7 @@ public abstract class ItemContainer {
 					items[slot].setId(item.getId());
 					items[slot].setAmount(1);
 					items[slot].setSlot(slot);
-
+					reindex(slot);
 				}
 				amount--;
 			}
@@ -779,6 +991,7 @@ public abstract class ItemContainer {
 			if (items[slot].getAmount() < 1)
 				items[slot].setId(-1);
 			items[slot].setSlot(slot);
+			reindex(slot);
 		} else {
 			int amount = item.getAmount();
 			while (amount > 0) {
@@ -787,6 +1000,7 @@ public abstract class ItemContainer {
 				items[slot].setId(-1);
 				items[slot].setAmount(0);
 				items[slot].setSlot(slot);
+				reindex(slot);
 				slot = getSlot(item.getId());
 				amount--;
 			}
@@ -804,6 +1018,11 @@ public abstract class ItemContainer {
 	 * @return the item id on this index.
 	 */
 	public Item getById(int id) {
+		ItemSlotIndex index = index();
+		if (index != null && id > 0) {
+			int slot = index.first(id);
+			return slot == -1 ? null : items[slot];
+		}
 		for (int i = 0; i < items.length; i++) {
 			if (items[i] == null) {
 				continue;
@@ -829,6 +1048,7 @@ public abstract class ItemContainer {
 
 	public void set(int slot, Item item) {
 		items[slot] = item;
+		reindex(slot);
 	}
 
 	public Item get(int slot) {
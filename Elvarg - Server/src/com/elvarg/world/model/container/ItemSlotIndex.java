@@ -0,0 +1,172 @@
+package com.elvarg.world.model.container;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.elvarg.world.model.Item;
+
+/**
+ * The slots of an {@link ItemContainer}, indexed by the id of the item in
+ * them, along with the slots which are free.
+ * <p>
+ * The container updates the index whenever it changes one of its slots, so
+ * every change to an indexed container, amounts included, must go through its
+ * methods. Slots looked up by item id are checked against the item actually
+ * in them, and the first free slot is checked to be empty, with the whole
+ * index rebuilt if they no longer match. Other changes made directly to an
+ * item, such as an item put into a slot or an amount set to 0, are not
+ * noticed.
+ */
+final class ItemSlotIndex {
+
+	/**
+	 * The items of the container.
+	 */
+	private final Item[] items;
+
+	/**
+	 * The id each slot was indexed under, or -1 if it was free.
+	 */
+	private final int[] ids;
+
+	/**
+	 * The slots holding each item id.
+	 */
+	private final Map<Integer, BitSet> slots = new HashMap<>();
+
+	/**
+	 * The free slots.
+	 */
+	private final BitSet free = new BitSet();
+
+	/**
+	 * Creates a new {@link ItemSlotIndex}.
+	 *
+	 * @param items
+	 *            the items of the container.
+	 */
+	ItemSlotIndex(Item[] items) {
+		this.items = items;
+		this.ids = new int[items.length];
+		rebuild();
+	}
+
+	/**
+	 * Checks if the index was built for an array of items.
+	 */
+	boolean covers(Item[] items) {
+		return this.items == items;
+	}
+
+	/**
+	 * Indexes every slot again.
+	 */
+	void rebuild() {
+		slots.clear();
+		free.clear();
+		for (int slot = 0; slot < items.length; slot++) {
+			ids[slot] = -1;
+			update(slot);
+		}
+	}
+
+	/**
+	 * Indexes a slot again, after the item in it has changed.
+	 *
+	 * @param slot
+	 *            the slot which changed.
+	 */
+	void update(int slot) {
+		int id = occupied(items[slot]) ? items[slot].getId() : -1;
+		int previous = ids[slot];
+		if (id == previous && (id != -1 || free.get(slot))) {
+			return;
+		}
+		if (previous != -1) {
+			BitSet holding = slots.get(previous);
+			if (holding != null) {
+				holding.clear(slot);
+				if (holding.isEmpty()) {
+					slots.remove(previous);
+				}
+			}
+		}
+		ids[slot] = id;
+		if (id == -1) {
+			free.set(slot);
+		} else {
+			free.clear(slot);
+			slots.computeIfAbsent(id, k -> new BitSet()).set(slot);
+		}
+	}
+
+	/**
+	 * Gets the slots holding an item.
+	 *
+	 * @param id
+	 *            the id of the item.
+	 * @return the slots, which must not be changed, or {@code null} if no
+	 *         slot holds the item.
+	 */
+	BitSet slots(int id) {
+		BitSet holding = slots.get(id);
+		if (holding == null || valid(holding, id)) {
+			return holding;
+		}
+		rebuild();
+		return slots.get(id);
+	}
+
+	/**
+	 * Gets the first slot holding an item.
+	 *
+	 * @param id
+	 *            the id of the item.
+	 * @return the slot, or -1 if no slot holds the item.
+	 */
+	int first(int id) {
+		BitSet holding = slots(id);
+		return holding == null ? -1 : holding.nextSetBit(0);
+	}
+
+	/**
+	 * Gets the first free slot.
+	 *
+	 * @return the slot, or -1 if every slot is taken.
+	 */
+	int firstFree() {
+		int slot = free.nextSetBit(0);
+		if (slot != -1 && occupied(items[slot])) {
+			rebuild();
+			slot = free.nextSetBit(0);
+		}
+		return slot;
+	}
+
+	/**
+	 * Gets the amount of free slots.
+	 */
+	int freeCount() {
+		return free.cardinality();
+	}
+
+	/**
+	 * Checks if every slot indexed under an item still holds it.
+	 */
+	private boolean valid(BitSet holding, int id) {
+		for (int slot = holding.nextSetBit(0); slot != -1; slot = holding.nextSetBit(slot + 1)) {
+			if (!occupied(items[slot]) || items[slot].getId() != id) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if an item takes up its slot.
+	 */
+	private static boolean occupied(Item item) {
+		return item != null && item.getId() > 0 && item.getAmount() > 0;
+	}
+}
@@ -35,6 +35,11 @@ public class Bank extends ItemContainer {
 		return StackType.STACKS;
 	}
 
+	@Override
+	protected boolean indexed() {
+		return true;
+	}
+
 	public Bank open() {
 		
 		// Update player status
@@ -701,11 +706,8 @@ public class Bank extends ItemContainer {
 			if (k == BANK_SEARCH_TAB_INDEX) {
 				continue;
 			}
-			Bank bank = player.getBank(k);
-			for (int i = 0; i < bank.getValidItems().size(); i++) {
-				if (bank.getItems()[i].getId() == itemID) {
-					return k;
-				}
+			if (player.getBank(k).contains(itemID)) {
+				return k;
 			}
 		}
 		return player.getCurrentBankTab();
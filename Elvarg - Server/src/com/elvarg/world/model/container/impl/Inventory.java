@@ -35,6 +35,11 @@ public class Inventory extends ItemContainer {
 		return StackType.DEFAULT;
 	}
 
+	@Override
+	protected boolean indexed() {
+		return true;
+	}
+
 	@Override
 	public Inventory refreshItems() {
 		getPlayer().getPacketSender().sendItemContainer(this, INTERFACE_ID);
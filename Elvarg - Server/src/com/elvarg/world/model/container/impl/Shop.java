@@ -6,6 +6,8 @@ import com.elvarg.engine.task.TaskManager;
 import com.elvarg.engine.task.impl.ShopRestockTask;
 import com.elvarg.world.World;
 import com.elvarg.world.entity.impl.player.Player;
+import com.elvarg.world.grounditems.GroundItemManager;
+import com.elvarg.world.model.GroundItem;
 import com.elvarg.world.model.Item;
 import com.elvarg.world.model.PlayerStatus;
 import com.elvarg.world.model.container.ItemContainer;
@@ -251,65 +253,55 @@ public class Shop extends ItemContainer {
 			return this;
 		}
 
-		// Start buying the item.
-		for (int i = amount_buying; i > 0; i--) {
-
-			// Make sure player can keep buying the item..
-			if (!contains(item.getId())) {
-				break;
-			}
-
-			if (getItems()[slot].getAmount() <= 1 && player.getShop().getDefinition().getId() != GENERAL_STORE) {
-				player.getPacketSender().sendMessage("The shop has run out of stock for this item.");
-				break;
-			}
-
-			if (!item.getDefinition().isStackable()) {
-				if (currency_amount >= item_value && hasInventorySpace(player, item, currency_id, item_value)) {
-
-					if (!custom_shop) {
-						player.getInventory().delete(currency_id, item_value, false);
-					} else {
-						if (getDefinition().getId() == PKING_REWARDS_STORE) {
-							player.setPkp(player.getPkp() - item_value);
-						}
-					}
+		// Work out how many can be bought at once: limited by the shop's
+		// stock, which keeps its last item unless it's the general store,
+		// by the currency and by the room in the inventory.
+		int stock = getItems()[slot].getAmount();
+		if (getDefinition().getId() != GENERAL_STORE) {
+			stock--;
+		}
+		int buying = Math.min(amount_buying, Math.min(stock, currency_amount / item_value));
+		int room = to.getRoomFor(item.getId());
+		if (buying > room) {
+			// Paying with the last of the currency frees up its slot.
+			buying = !custom_shop && (long) (room + 1) * item_value == currency_amount ? room + 1 : room;
+		}
 
-					super.switchItem(to, new Item(item.getId(), 1), slot, false, false);
-					currency_amount -= item_value;
-				} else {
-					break;
-				}
+		if (buying > 0) {
+			if (!custom_shop) {
+				player.getInventory().deleteUnits(currency_id, buying * item_value);
 			} else {
-				if (currency_amount >= item_value && hasInventorySpace(player, item, currency_id, item_value)) {
-
-					int canBeBought = currency_amount / (item_value);
-					if (canBeBought >= amount_buying) {
-						canBeBought = amount_buying;
-					}
-					if (canBeBought == 0)
-						break;
-
-					if (!custom_shop) {
-
-						player.getInventory().delete(currency_id, item_value * canBeBought, false);
-
-					} else {
-
-						if (getDefinition().getId() == PKING_REWARDS_STORE) {
-							player.setPkp(player.getPkp() - (item_value * canBeBought));
-						}
+				if (getDefinition().getId() == PKING_REWARDS_STORE) {
+					player.setPkp(player.getPkp() - buying * item_value);
+				}
+			}
+			int taken = deleteUnits(item.getId(), buying);
+			int added = to.addUnits(item.getId(), taken);
+
+			// Put back and refund whatever didn't fit after all.
+			if (added < buying) {
+				addUnits(item.getId(), taken - added);
+				int refund = (buying - added) * item_value;
+				if (!custom_shop) {
+					int unrefunded = refund - player.getInventory().addUnits(currency_id, refund);
+					if (unrefunded > 0) {
+						GroundItemManager.spawnGroundItem(player,
+								new GroundItem(new Item(currency_id, unrefunded), player.getPosition().copy(),
+										player.getUsername(), player.getHostAddress(), false, 150, true, 200));
+						player.getPacketSender().sendMessage("Some of your " + currencyName
+								+ " didn't fit in your inventory and were dropped on the ground.");
 					}
-
-					super.switchItem(to, new Item(item.getId(), canBeBought), slot, false, false);
-					currency_amount -= item_value;
-					break;
-				} else {
-					break;
+				} else if (getDefinition().getId() == PKING_REWARDS_STORE) {
+					player.setPkp(player.getPkp() + refund);
 				}
+				buying = added;
 			}
-			amount_buying--;
 		}
+
+		if (buying < amount_buying && buying == stock && getDefinition().getId() != GENERAL_STORE) {
+			player.getPacketSender().sendMessage("The shop has run out of stock for this item.");
+		}
+
 		player.getInventory().refreshItems();
 		fireRestockTask();
 		refreshItems();
@@ -416,38 +408,25 @@ public class Shop extends ItemContainer {
 			item_value = 1;
 		}
 
-		// Sell item
-		for (int i = amount_selling; i > 0; i--) {
-			if (player.getShop().full(item_id) || !player.getInventory().contains(item_id)) {
-				break;
-			}
-			if (!item_def.isStackable()) {
-				if (inventory_space) {
-					player.getShop().switchItem(player.getInventory(), player.getShop(), item_id, -1);
-					if (!custom_shop) {
-						player.getInventory().add(new Item(currency_id, item_value), false);
-					} else {
-						// Return points here
-					}
-				} else {
-					player.getPacketSender().sendMessage("Please free some inventory space before doing that.");
-					break;
-				}
+		if (!inventory_space) {
+			player.getPacketSender().sendMessage("Please free some inventory space before doing that.");
+			return;
+		}
+
+		// Sell as many as the shop has room for, and as the player can hold
+		// the money for, at once.
+		amount_selling = Math.min(amount_selling, player.getShop().getRoomFor(item_id));
+		if (!custom_shop) {
+			int currency_amount = player.getInventory().getAmount(currency_id);
+			amount_selling = Math.min(amount_selling, (Integer.MAX_VALUE - currency_amount) / item_value);
+		}
+		int sold = player.getInventory().transfer(player.getShop(), item_id, amount_selling);
+		if (sold > 0) {
+			if (!custom_shop) {
+				player.getInventory().addUnits(currency_id, sold * item_value);
 			} else {
-				if (inventory_space) {
-					player.getShop().switchItem(player.getInventory(), player.getShop(), item_id, amount_selling);
-					if (!custom_shop) {
-						player.getInventory().add(new Item(currency_id, item_value * amount_selling), false);
-					} else {
-						// Return points here
-					}
-					break;
-				} else {
-					player.getPacketSender().sendMessage("Please free some inventory space before doing that.");
-					break;
-				}
+				// Return points here
 			}
-			amount_selling--;
 		}
 		player.getInventory().refreshItems();
 		player.getShop().fireRestockTask();
@@ -0,0 +1,308 @@
+package com.elvarg.world.model.movement;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.elvarg.world.collision.region.RegionClipping;
+import com.elvarg.world.entity.impl.Character;
+import com.elvarg.world.model.Position;
+
+/**
+ * Remembers the paths found by {@link RS317PathFinder}, so characters
+ * chasing a target don't search for the same route every tick.
+ * <p>
+ * Paths are grouped by their destination. A lookup succeeds if the
+ * character stands on any tile of a path to the same destination, in which
+ * case the rest of that path is walked. Many npcs chasing the same player
+ * along the same route therefore share a single search. A path is dropped
+ * as soon as clipping changes in any chunk it crosses.
+ */
+public final class PathCache {
+
+	/**
+	 * The maximum amount of destinations remembered.
+	 */
+	private static final int CAPACITY = 512;
+
+	/**
+	 * The maximum amount of paths remembered per destination.
+	 */
+	private static final int PATHS_PER_DESTINATION = 4;
+
+	/**
+	 * The remembered paths, keyed by destination and least recently used
+	 * first.
+	 */
+	private static final Map<Long, List<Path>> paths = new LinkedHashMap<Long, List<Path>>(CAPACITY, 0.75f,
+			true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, List<Path>> eldest) {
+			return size() > CAPACITY;
+		}
+	};
+
+	/**
+	 * The amount of lookups which found a path.
+	 */
+	private static final AtomicLong hits = new AtomicLong();
+
+	/**
+	 * The amount of lookups which found no path.
+	 */
+	private static final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * The amount of paths dropped because their clipping changed.
+	 */
+	private static final AtomicLong invalidations = new AtomicLong();
+
+	/**
+	 * Creates the key of a destination.
+	 *
+	 * @param destX
+	 *            the absolute x coordinate of the destination.
+	 * @param destY
+	 *            the absolute y coordinate of the destination.
+	 * @param z
+	 *            the plane of the destination.
+	 * @param moveNear
+	 *            may the path end near the destination?
+	 * @param xLength
+	 *            the width of the destination.
+	 * @param yLength
+	 *            the length of the destination.
+	 * @return the key.
+	 */
+	public static long key(int destX, int destY, int z, boolean moveNear, int xLength, int yLength) {
+		return (long) (destX & 0x3FFF) | (long) (destY & 0x3FFF) << 14 | (long) (xLength & 0x3F) << 28
+				| (long) (yLength & 0x3F) << 34 | (moveNear ? 1L << 40 : 0) | (long) (z & 0x7FFFFF) << 41;
+	}
+
+	/**
+	 * Packs an absolute position into a step.
+	 */
+	public static int step(int x, int y) {
+		return x << 14 | y;
+	}
+
+	/**
+	 * Walks a character along a remembered path to a destination, if one
+	 * passes through the tile they are standing on.
+	 *
+	 * @param character
+	 *            the character to move.
+	 * @param key
+	 *            the key of the destination, see {@link #key}.
+	 * @return true if a path was found and queued.
+	 */
+	public static boolean walk(Character character, long key) {
+		final Position position = character.getPosition();
+		final int start = step(position.getX(), position.getY());
+		Path path = null;
+		int index = -1;
+		synchronized (paths) {
+			List<Path> candidates = paths.get(key);
+			if (candidates != null) {
+				for (int i = candidates.size() - 1; i >= 0; i--) {
+					Path candidate = candidates.get(i);
+					int found = candidate.indexOf(start);
+					if (found == -1) {
+						continue;
+					}
+					if (!candidate.isValid()) {
+						candidates.remove(i);
+						invalidations.incrementAndGet();
+						continue;
+					}
+					path = candidate;
+					index = found;
+					break;
+				}
+				if (candidates.isEmpty()) {
+					paths.remove(key);
+				}
+			}
+		}
+		if (path == null) {
+			misses.incrementAndGet();
+			return false;
+		}
+		hits.incrementAndGet();
+		path.walk(character, index);
+		return true;
+	}
+
+	/**
+	 * Remembers a path.
+	 *
+	 * @param key
+	 *            the key of the path's destination, see {@link #key}.
+	 * @param path
+	 *            the path.
+	 */
+	public static void put(long key, Path path) {
+		synchronized (paths) {
+			List<Path> candidates = paths.get(key);
+			if (candidates == null) {
+				paths.put(key, candidates = new ArrayList<>(PATHS_PER_DESTINATION));
+			} else if (candidates.size() >= PATHS_PER_DESTINATION) {
+				candidates.remove(0);
+			}
+			candidates.add(path);
+		}
+	}
+
+	/**
+	 * Describes the cache in a single line.
+	 */
+	public static String summary() {
+		int size;
+		synchronized (paths) {
+			size = paths.size();
+		}
+		return "destinations=" + size + " hits=" + hits.get() + " misses=" + misses.get() + " invalidated="
+				+ invalidations.get();
+	}
+
+	/**
+	 * Clears the recorded statistics.
+	 */
+	public static void reset() {
+		hits.set(0);
+		misses.set(0);
+		invalidations.set(0);
+	}
+
+	/**
+	 * A path found by a search, along with the version of the clipping of
+	 * every chunk it crosses at the time it was found.
+	 */
+	public static final class Path {
+
+		/**
+		 * Every tile of the path, from the tile it starts on to the tile it
+		 * ends on.
+		 */
+		private final int[] steps;
+
+		/**
+		 * The plane of the path.
+		 */
+		private final int z;
+
+		/**
+		 * The chunks the path crosses, in absolute chunk coordinates.
+		 */
+		private final int[] chunks;
+
+		/**
+		 * The version of each chunk's clipping when the path was found.
+		 */
+		private final int[] versions;
+
+		/**
+		 * Creates a new {@link Path}. Must be created after the search, so
+		 * that any regions loaded by the search are reflected in the chunk
+		 * versions.
+		 *
+		 * @param steps
+		 *            every tile of the path, see {@link PathCache#step}.
+		 * @param z
+		 *            the plane of the path.
+		 */
+		public Path(int[] steps, int z) {
+			this.steps = steps;
+			this.z = z;
+			int[] chunks = new int[steps.length * 3];
+			int count = 0;
+			for (int i = 0; i < steps.length; i++) {
+				count = addChunk(chunks, count, steps[i]);
+				if (i > 0) {
+					// A diagonal step also depends on the clipping of the two
+					// tiles beside it.
+					count = addChunk(chunks, count, step(steps[i] >> 14, steps[i - 1] & 0x3FFF));
+					count = addChunk(chunks, count, step(steps[i - 1] >> 14, steps[i] & 0x3FFF));
+				}
+			}
+			this.chunks = new int[count];
+			this.versions = new int[count];
+			for (int i = 0; i < count; i++) {
+				this.chunks[i] = chunks[i];
+				this.versions[i] = RegionClipping.getChunkVersion(chunks[i] >> 11 << 3, (chunks[i] & 0x7FF) << 3);
+			}
+		}
+
+		/**
+		 * Adds the chunk of a step to a list of chunks, unless it is already
+		 * in it.
+		 */
+		private static int addChunk(int[] chunks, int count, int step) {
+			int chunk = (step >> 14 >> 3) << 11 | (step & 0x3FFF) >> 3;
+			for (int i = count - 1; i >= 0; i--) {
+				if (chunks[i] == chunk) {
+					return count;
+				}
+			}
+			chunks[count] = chunk;
+			return count + 1;
+		}
+
+		/**
+		 * Gets the index of a tile on the path.
+		 *
+		 * @return the index, or -1 if the tile is not on the path.
+		 */
+		private int indexOf(int step) {
+			for (int i = 0; i < steps.length; i++) {
+				if (steps[i] == step) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Checks if the clipping of every chunk the path crosses is unchanged.
+		 */
+		private boolean isValid() {
+			for (int i = 0; i < chunks.length; i++) {
+				if (RegionClipping.getChunkVersion(chunks[i] >> 11 << 3, (chunks[i] & 0x7FF) << 3) != versions[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Queues the rest of the path as a character's movement.
+		 *
+		 * @param character
+		 *            the character to move.
+		 * @param index
+		 *            the index of the tile the character is standing on.
+		 */
+		public void walk(Character character, int index) {
+			final MovementQueue queue = character.getMovementQueue();
+			if (index == steps.length - 1) {
+				queue.reset();
+				return;
+			}
+			queue.addFirstStep(position(index + 1));
+			for (int i = index + 2; i < steps.length; i++) {
+				queue.addStep(position(i));
+			}
+		}
+
+		/**
+		 * Gets a tile of the path as a position.
+		 */
+		private Position position(int index) {
+			return new Position(steps[index] >> 14, steps[index] & 0x3FFF, z);
+		}
+	}
+}
@@ -0,0 +1,475 @@
+package com.elvarg.world.model.movement;
+
+import java.util.Arrays;
+
+import com.elvarg.world.collision.region.RegionClipping;
+
+/**
+ * The search state used by {@link RS317PathFinder}. Searches run over the
+ * 104x104 tile area a client has loaded, in local coordinates.
+ * <p>
+ * Every thread owns one instance, so finding a path never allocates. The
+ * grids are flat {@code int} arrays which are never cleared. Instead, every
+ * search gets a new generation, and a tile's entries are only valid if its
+ * stamp matches the current generation. The open set of a breadth-first
+ * search is a primitive ring of packed tiles, and the open set of an A*
+ * search is a primitive binary heap.
+ */
+public final class PathSearch {
+
+	/**
+	 * The width and height of the searched area.
+	 */
+	public static final int SIZE = 104;
+
+	/**
+	 * The maximum amount of tiles queued by a search.
+	 */
+	public static final int MAX_QUEUED = 4000;
+
+	/**
+	 * The cost of a straight step in an A* search.
+	 */
+	private static final int STRAIGHT_COST = 10;
+
+	/**
+	 * The cost of a diagonal step in an A* search.
+	 */
+	private static final int DIAGONAL_COST = 14;
+
+	/**
+	 * The directions a search expands in: south, west, north, east, then
+	 * south-west, north-west, south-east and north-east.
+	 */
+	private static final int[] DELTA_X = { 0, -1, 0, 1, -1, -1, 1, 1 };
+	private static final int[] DELTA_Y = { -1, 0, 1, 0, -1, 1, -1, 1 };
+
+	/**
+	 * The via flags stored for a tile reached in each direction, which tell
+	 * the trace which way to step back.
+	 */
+	private static final int[] VIA = { 1, 2, 4, 8, 3, 6, 9, 12 };
+
+	/**
+	 * The clipping which blocks entering a tile in each direction.
+	 */
+	private static final int[] BLOCKED = { 0x1280102, 0x1280108, 0x1280120, 0x1280180, 0x128010e, 0x1280138,
+			0x1280183, 0x12801e0 };
+
+	/**
+	 * The via flag stored for the tile a search starts on.
+	 */
+	private static final int START = 99;
+
+	/**
+	 * The search state of every thread.
+	 */
+	private static final ThreadLocal<PathSearch> searches = ThreadLocal.withInitial(PathSearch::new);
+
+	/**
+	 * Gets the search state of the calling thread.
+	 */
+	public static PathSearch get() {
+		return searches.get();
+	}
+
+	/**
+	 * The direction each tile was reached from.
+	 */
+	private final int[] via = new int[SIZE * SIZE];
+
+	/**
+	 * The cost of reaching each tile.
+	 */
+	private final int[] cost = new int[SIZE * SIZE];
+
+	/**
+	 * The generation in which each tile was reached.
+	 */
+	private final int[] reached = new int[SIZE * SIZE];
+
+	/**
+	 * The generation in which each tile was expanded by an A* search.
+	 */
+	private final int[] closed = new int[SIZE * SIZE];
+
+	/**
+	 * The ring of tiles queued by a breadth-first search.
+	 */
+	private final int[] queue = new int[Integer.highestOneBit(MAX_QUEUED) << 1];
+
+	/**
+	 * The waypoints of the last traced path, from the destination back to
+	 * the start.
+	 */
+	private final int[] waypoints = new int[SIZE * SIZE];
+
+	/**
+	 * The binary heap of tiles queued by an A* search, each packed together
+	 * with its estimated total cost.
+	 */
+	private int[] heap = new int[256];
+
+	/**
+	 * The amount of tiles in the heap.
+	 */
+	private int heapSize;
+
+	/**
+	 * The generation of the current search.
+	 */
+	private int generation;
+
+	private PathSearch() {
+	}
+
+	/**
+	 * Packs a local position into a tile index.
+	 */
+	public static int tile(int x, int y) {
+		return x * SIZE + y;
+	}
+
+	/**
+	 * Gets the local x coordinate of a tile index.
+	 */
+	public static int tileX(int tile) {
+		return tile / SIZE;
+	}
+
+	/**
+	 * Gets the local y coordinate of a tile index.
+	 */
+	public static int tileY(int tile) {
+		return tile % SIZE;
+	}
+
+	/**
+	 * Checks if a local position is within the searched area.
+	 */
+	public static boolean inBounds(int x, int y) {
+		return x >= 0 && y >= 0 && x < SIZE && y < SIZE;
+	}
+
+	/**
+	 * Searches breadth-first from the start until the destination is
+	 * reached, every step costing the same.
+	 *
+	 * @param startX
+	 *            the local x coordinate to start from.
+	 * @param startY
+	 *            the local y coordinate to start from.
+	 * @param destX
+	 *            the local x coordinate of the destination.
+	 * @param destY
+	 *            the local y coordinate of the destination.
+	 * @param baseX
+	 *            the absolute x coordinate of local 0.
+	 * @param baseY
+	 *            the absolute y coordinate of local 0.
+	 * @param z
+	 *            the plane to search.
+	 * @param noclip
+	 *            should clipping be ignored?
+	 * @return true if the destination was reached.
+	 */
+	public boolean breadthFirst(int startX, int startY, int destX, int destY, int baseX, int baseY, int z,
+			boolean noclip) {
+		final int generation = nextGeneration();
+		final int mask = queue.length - 1;
+		final int start = tile(startX, startY);
+		reach(start, START, 0);
+		int head = 0;
+		int tail = 0;
+		queue[tail++ & mask] = start;
+
+		while (head != tail && tail < MAX_QUEUED) {
+			final int current = queue[head++ & mask];
+			final int curX = tileX(current);
+			final int curY = tileY(current);
+			if (curX == destX && curY == destY) {
+				return true;
+			}
+			final int nextCost = cost[current] + 1;
+			for (int dir = 0; dir < 8; dir++) {
+				final int x = curX + DELTA_X[dir];
+				final int y = curY + DELTA_Y[dir];
+				if (!inBounds(x, y)) {
+					continue;
+				}
+				final int next = tile(x, y);
+				if (reached[next] == generation) {
+					continue;
+				}
+				if (!noclip && !traversable(baseX + curX, baseY + curY, z, dir)) {
+					continue;
+				}
+				reach(next, VIA[dir], nextCost);
+				queue[tail++ & mask] = next;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Searches from the start towards the destination with A*, using the
+	 * octile distance as its heuristic. Expands far fewer tiles than a
+	 * breadth-first search on long walks, but only the tiles it expanded
+	 * have a known cost afterwards.
+	 *
+	 * @param startX
+	 *            the local x coordinate to start from.
+	 * @param startY
+	 *            the local y coordinate to start from.
+	 * @param destX
+	 *            the local x coordinate of the destination.
+	 * @param destY
+	 *            the local y coordinate of the destination.
+	 * @param baseX
+	 *            the absolute x coordinate of local 0.
+	 * @param baseY
+	 *            the absolute y coordinate of local 0.
+	 * @param z
+	 *            the plane to search.
+	 * @param noclip
+	 *            should clipping be ignored?
+	 * @return true if the destination was reached.
+	 */
+	public boolean aStar(int startX, int startY, int destX, int destY, int baseX, int baseY, int z,
+			boolean noclip) {
+		final int generation = nextGeneration();
+		final int start = tile(startX, startY);
+		final int destination = tile(destX, destY);
+		reach(start, START, 0);
+		heapSize = 0;
+		push(heuristic(startX, startY, destX, destY), start);
+
+		int expanded = 0;
+		while (heapSize > 0 && expanded < MAX_QUEUED) {
+			final int current = pop();
+			if (closed[current] == generation) {
+				continue;
+			}
+			closed[current] = generation;
+			if (current == destination) {
+				return true;
+			}
+			expanded++;
+			final int curX = tileX(current);
+			final int curY = tileY(current);
+			for (int dir = 0; dir < 8; dir++) {
+				final int x = curX + DELTA_X[dir];
+				final int y = curY + DELTA_Y[dir];
+				if (!inBounds(x, y)) {
+					continue;
+				}
+				final int next = tile(x, y);
+				if (closed[next] == generation) {
+					continue;
+				}
+				final int nextCost = cost[current] + (dir < 4 ? STRAIGHT_COST : DIAGONAL_COST);
+				if (reached[next] == generation && cost[next] <= nextCost) {
+					continue;
+				}
+				if (!noclip && !traversable(baseX + curX, baseY + curY, z, dir)) {
+					continue;
+				}
+				reach(next, VIA[dir], nextCost);
+				push(nextCost + heuristic(x, y, destX, destY), next);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the reached tile closest to a destination, for when the
+	 * destination itself could not be reached. Only valid after a
+	 * breadth-first search.
+	 *
+	 * @param destX
+	 *            the local x coordinate of the destination.
+	 * @param destY
+	 *            the local y coordinate of the destination.
+	 * @param xLength
+	 *            the width of the destination.
+	 * @param yLength
+	 *            the length of the destination.
+	 * @return the closest tile, or -1 if no tile near the destination was
+	 *         reached.
+	 */
+	public int closest(int destX, int destY, int xLength, int yLength) {
+		final int radius = 10;
+		int bestDistance = 1000;
+		int bestCost = 100;
+		int best = -1;
+		for (int x = destX - radius; x <= destX + radius; x++) {
+			for (int y = destY - radius; y <= destY + radius; y++) {
+				if (!inBounds(x, y)) {
+					continue;
+				}
+				final int tile = tile(x, y);
+				if (reached[tile] != generation || cost[tile] >= 100) {
+					continue;
+				}
+				int deltaX = 0;
+				if (x < destX) {
+					deltaX = destX - x;
+				} else if (x > destX + xLength - 1) {
+					deltaX = x - (destX + xLength - 1);
+				}
+				int deltaY = 0;
+				if (y < destY) {
+					deltaY = destY - y;
+				} else if (y > destY + yLength - 1) {
+					deltaY = y - (destY + yLength - 1);
+				}
+				final int distance = deltaX * deltaX + deltaY * deltaY;
+				if (distance < bestDistance || distance == bestDistance && cost[tile] < bestCost) {
+					bestDistance = distance;
+					bestCost = cost[tile];
+					best = tile;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Traces the path of the last search back from a reached tile to the
+	 * start, keeping only the tiles where the path changes direction.
+	 *
+	 * @param end
+	 *            the tile the path ends on.
+	 * @param startX
+	 *            the local x coordinate the search started from.
+	 * @param startY
+	 *            the local y coordinate the search started from.
+	 * @return the amount of waypoints, see {@link #getWaypoint(int)}.
+	 */
+	public int trace(int end, int startX, int startY) {
+		int count = 0;
+		int curX = tileX(end);
+		int curY = tileY(end);
+		waypoints[count++] = end;
+		int last = via[end];
+		while (curX != startX || curY != startY) {
+			final int direction = via[tile(curX, curY)];
+			if (direction != last) {
+				last = direction;
+				waypoints[count++] = tile(curX, curY);
+			}
+			if ((direction & 2) != 0) {
+				curX++;
+			} else if ((direction & 8) != 0) {
+				curX--;
+			}
+			if ((direction & 1) != 0) {
+				curY++;
+			} else if ((direction & 4) != 0) {
+				curY--;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Gets a waypoint of the last traced path. Waypoint 0 is the end of the
+	 * path.
+	 */
+	public int getWaypoint(int index) {
+		return waypoints[index];
+	}
+
+	/**
+	 * Checks if a step in a direction can be taken from a tile.
+	 */
+	private static boolean traversable(int absX, int absY, int z, int dir) {
+		final int dx = DELTA_X[dir];
+		final int dy = DELTA_Y[dir];
+		if ((RegionClipping.getClipping(absX + dx, absY + dy, z) & BLOCKED[dir]) != 0) {
+			return false;
+		}
+		if (dx == 0 || dy == 0) {
+			return true;
+		}
+		// Diagonal steps also need both of the adjacent straight steps.
+		return (RegionClipping.getClipping(absX + dx, absY, z) & (dx < 0 ? BLOCKED[1] : BLOCKED[3])) == 0
+				&& (RegionClipping.getClipping(absX, absY + dy, z) & (dy < 0 ? BLOCKED[0] : BLOCKED[2])) == 0;
+	}
+
+	/**
+	 * Gets the octile distance between two tiles.
+	 */
+	private static int heuristic(int x, int y, int destX, int destY) {
+		final int dx = Math.abs(x - destX);
+		final int dy = Math.abs(y - destY);
+		return STRAIGHT_COST * (dx + dy) + (DIAGONAL_COST - 2 * STRAIGHT_COST) * Math.min(dx, dy);
+	}
+
+	/**
+	 * Marks a tile as reached in the current search.
+	 */
+	private void reach(int tile, int direction, int tileCost) {
+		reached[tile] = generation;
+		via[tile] = direction;
+		cost[tile] = tileCost;
+	}
+
+	/**
+	 * Starts a new generation, which invalidates every grid entry.
+	 */
+	private int nextGeneration() {
+		if (++generation == 0) {
+			Arrays.fill(reached, 0);
+			Arrays.fill(closed, 0);
+			generation = 1;
+		}
+		return generation;
+	}
+
+	/**
+	 * Adds a tile to the heap. The estimated cost occupies the upper bits,
+	 * so comparing the packed values orders the heap by cost.
+	 */
+	private void push(int estimate, int tile) {
+		if (heapSize == heap.length) {
+			heap = Arrays.copyOf(heap, heapSize << 1);
+		}
+		final int value = estimate << 14 | tile;
+		int index = heapSize++;
+		while (index > 0) {
+			final int parent = (index - 1) >> 1;
+			if (heap[parent] <= value) {
+				break;
+			}
+			heap[index] = heap[parent];
+			index = parent;
+		}
+		heap[index] = value;
+	}
+
+	/**
+	 * Removes the tile with the lowest estimated cost from the heap.
+	 */
+	private int pop() {
+		final int top = heap[0];
+		final int value = heap[--heapSize];
+		int index = 0;
+		while (true) {
+			int child = (index << 1) + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+				child++;
+			}
+			if (heap[child] >= value) {
+				break;
+			}
+			heap[index] = heap[child];
+			index = child;
+		}
+		heap[index] = value;
+		return top & 0x3FFF;
+	}
+}
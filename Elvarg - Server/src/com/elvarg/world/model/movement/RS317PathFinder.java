@@ -1,7 +1,5 @@
 package com.elvarg.world.model.movement;
 
-import java.util.LinkedList;
-
 import com.elvarg.world.collision.region.RegionClipping;
 import com.elvarg.world.entity.impl.Character;
 import com.elvarg.world.entity.impl.player.Player;
@@ -9,179 +7,139 @@ import com.elvarg.world.model.Position;
 
 public class RS317PathFinder {
 
+	/**
+	 * The distance beyond which paths are searched for with A* instead of a
+	 * breadth-first search.
+	 */
+	public static final int A_STAR_DISTANCE = 16;
+
+	/**
+	 * Finds a path for a character and queues it as their movement. Uses A*
+	 * for walks longer than {@link #A_STAR_DISTANCE}.
+	 *
+	 * @param gc
+	 *            the character to move.
+	 * @param destX
+	 *            the absolute x coordinate of the destination.
+	 * @param destY
+	 *            the absolute y coordinate of the destination.
+	 * @param moveNear
+	 *            should the character move as close as possible if the
+	 *            destination can't be reached?
+	 * @param xLength
+	 *            the width of the destination.
+	 * @param yLength
+	 *            the length of the destination.
+	 */
 	public static void findPath(Character gc, int destX, int destY, boolean moveNear, int xLength, int yLength) {
+		final Position position = gc.getPosition();
+		final int distance = Math.max(Math.abs(destX - position.getX()), Math.abs(destY - position.getY()));
+		findPath(gc, destX, destY, moveNear, xLength, yLength, distance > A_STAR_DISTANCE);
+	}
+
+	/**
+	 * Finds a path for a character and queues it as their movement.
+	 *
+	 * @param gc
+	 *            the character to move.
+	 * @param destX
+	 *            the absolute x coordinate of the destination.
+	 * @param destY
+	 *            the absolute y coordinate of the destination.
+	 * @param moveNear
+	 *            should the character move as close as possible if the
+	 *            destination can't be reached?
+	 * @param xLength
+	 *            the width of the destination.
+	 * @param yLength
+	 *            the length of the destination.
+	 * @param aStar
+	 *            should the path be searched for with A*?
+	 */
+	public static void findPath(Character gc, int destX, int destY, boolean moveNear, int xLength, int yLength,
+			boolean aStar) {
 		try {
-			if (destX == gc.getPosition().getLocalX() && destY == gc.getPosition().getLocalY() && !moveNear) {
+			final Position position = gc.getPosition();
+			if (destX == position.getLocalX() && destY == position.getLocalY() && !moveNear) {
 				return;
 			}
 			// Check if noclip is enabled for players
-			boolean noclip = gc.isPlayer() && ((Player)gc).isNoclip();
-			final int height = gc.getPosition().getZ() % 4;
-			destX = destX - 8 * gc.getPosition().getRegionX();
-			destY = destY - 8 * gc.getPosition().getRegionY();
-			final int[][] via = new int[104][104];
-			final int[][] cost = new int[104][104];
-			final LinkedList<Integer> tileQueueX = new LinkedList<Integer>();
-			final LinkedList<Integer> tileQueueY = new LinkedList<Integer>();
-			for (int xx = 0; xx < 104; xx++)
-				for (int yy = 0; yy < 104; yy++)
-					cost[xx][yy] = 99999999;
-			int curX = gc.getPosition().getLocalX();
-			int curY = gc.getPosition().getLocalY();
-			if (curX > via.length - 1 || curY > via[curX].length - 1)
+			final boolean noclip = gc.isPlayer() && ((Player) gc).isNoclip();
+			final int height = position.getZ() % 4;
+			final int baseX = position.getRegionX() * 8;
+			final int baseY = position.getRegionY() * 8;
+			final long key = PathCache.key(destX, destY, position.getZ(), moveNear, xLength, yLength);
+			if (!noclip && PathCache.walk(gc, key)) {
 				return;
-			if (curX < via.length && curY < via[0].length)
-				via[curX][curY] = 99;
-			if (curX < cost.length && curY < cost[0].length)
-				cost[curX][curY] = 0;
-			@SuppressWarnings("unused")
-			final int head = 0;
-			int tail = 0;
-			tileQueueX.add(curX);
-			tileQueueY.add(curY);
+			}
+			final int startX = position.getLocalX();
+			final int startY = position.getLocalY();
+			destX = destX - baseX;
+			destY = destY - baseY;
+			if (!PathSearch.inBounds(startX, startY)) {
+				return;
+			}
+
+			final PathSearch search = PathSearch.get();
 			boolean foundPath = false;
-			final int pathLength = 4000;
-			while (tail != tileQueueX.size() && tileQueueX.size() < pathLength) {
-				curX = tileQueueX.get(tail);
-				curY = tileQueueY.get(tail);
-				final int curAbsX = gc.getPosition().getRegionX() * 8 + curX;
-				final int curAbsY = gc.getPosition().getRegionY() * 8 + curY;
-				if (curX == destX && curY == destY) {
-					foundPath = true;
-					break;
+			if (aStar && PathSearch.inBounds(destX, destY)) {
+				foundPath = search.aStar(startX, startY, destX, destY, baseX, baseY, height, noclip);
+			}
+			if (!foundPath) {
+				// Moving near relies on the cost of every nearby tile, which
+				// only a breadth-first search provides.
+				if (aStar && !moveNear) {
+					return;
 				}
-				tail = (tail + 1) % pathLength;
+				foundPath = search.breadthFirst(startX, startY, destX, destY, baseX, baseY, height, noclip);
+			}
 
-				if (cost.length < curX || cost[curX].length < curY)
+			int end = PathSearch.tile(destX, destY);
+			if (!foundPath) {
+				if (!moveNear) {
 					return;
-				final int thisCost = cost[curX][curY] + 1;
-
-				if (curY > 0 && via[curX][curY - 1] == 0
-						&& (noclip || (RegionClipping.getClipping(curAbsX, curAbsY - 1, height) & 0x1280102) == 0)) {
-					tileQueueX.add(curX);
-					tileQueueY.add(curY - 1);
-					via[curX][curY - 1] = 1;
-					cost[curX][curY - 1] = thisCost;
-				}
-				if (curX > 0 && via[curX - 1][curY] == 0
-						&& (noclip || (RegionClipping.getClipping(curAbsX - 1, curAbsY, height) & 0x1280108) == 0)) {
-					tileQueueX.add(curX - 1);
-					tileQueueY.add(curY);
-					via[curX - 1][curY] = 2;
-					cost[curX - 1][curY] = thisCost;
 				}
-				if (curY < 104 - 1 && via[curX][curY + 1] == 0
-						&& (noclip || (RegionClipping.getClipping(curAbsX, curAbsY + 1, height) & 0x1280120) == 0)) {
-					tileQueueX.add(curX);
-					tileQueueY.add(curY + 1);
-					via[curX][curY + 1] = 4;
-					cost[curX][curY + 1] = thisCost;
-				}
-				if (curX < 104 - 1 && via[curX + 1][curY] == 0
-						&& (noclip || (RegionClipping.getClipping(curAbsX + 1, curAbsY, height) & 0x1280180) == 0)) {
-					tileQueueX.add(curX + 1);
-					tileQueueY.add(curY);
-					via[curX + 1][curY] = 8;
-					cost[curX + 1][curY] = thisCost;
-				}
-				if (curX > 0 && curY > 0 && via[curX - 1][curY - 1] == 0
-						&& (noclip || ((RegionClipping.getClipping(curAbsX - 1, curAbsY - 1, height) & 0x128010e) == 0
-						&& (RegionClipping.getClipping(curAbsX - 1, curAbsY, height) & 0x1280108) == 0
-						&& (RegionClipping.getClipping(curAbsX, curAbsY - 1, height) & 0x1280102) == 0))) {
-					tileQueueX.add(curX - 1);
-					tileQueueY.add(curY - 1);
-					via[curX - 1][curY - 1] = 3;
-					cost[curX - 1][curY - 1] = thisCost;
-				}
-				if (curX > 0 && curY < 104 - 1 && via[curX - 1][curY + 1] == 0
-						&& (noclip || ((RegionClipping.getClipping(curAbsX - 1, curAbsY + 1, height) & 0x1280138) == 0
-						&& (RegionClipping.getClipping(curAbsX - 1, curAbsY, height) & 0x1280108) == 0
-						&& (RegionClipping.getClipping(curAbsX, curAbsY + 1, height) & 0x1280120) == 0))) {
-					tileQueueX.add(curX - 1);
-					tileQueueY.add(curY + 1);
-					via[curX - 1][curY + 1] = 6;
-					cost[curX - 1][curY + 1] = thisCost;
-				}
-				if (curX < 104 - 1 && curY > 0 && via[curX + 1][curY - 1] == 0
-						&& (noclip || ((RegionClipping.getClipping(curAbsX + 1, curAbsY - 1, height) & 0x1280183) == 0
-						&& (RegionClipping.getClipping(curAbsX + 1, curAbsY, height) & 0x1280180) == 0
-						&& (RegionClipping.getClipping(curAbsX, curAbsY - 1, height) & 0x1280102) == 0))) {
-					tileQueueX.add(curX + 1);
-					tileQueueY.add(curY - 1);
-					via[curX + 1][curY - 1] = 9;
-					cost[curX + 1][curY - 1] = thisCost;
-				}
-				if (curX < 104 - 1 && curY < 104 - 1 && via[curX + 1][curY + 1] == 0
-						&& (noclip || ((RegionClipping.getClipping(curAbsX + 1, curAbsY + 1, height) & 0x12801e0) == 0
-						&& (RegionClipping.getClipping(curAbsX + 1, curAbsY, height) & 0x1280180) == 0
-						&& (RegionClipping.getClipping(curAbsX, curAbsY + 1, height) & 0x1280120) == 0))) {
-					tileQueueX.add(curX + 1);
-					tileQueueY.add(curY + 1);
-					via[curX + 1][curY + 1] = 12;
-					cost[curX + 1][curY + 1] = thisCost;
-				}
-			}
-			if (!foundPath)
-				if (moveNear) {
-					int i_223_ = 1000;
-					int thisCost = 100;
-					final int i_225_ = 10;
-					for (int x = destX - i_225_; x <= destX + i_225_; x++)
-						for (int y = destY - i_225_; y <= destY + i_225_; y++)
-							if (x >= 0 && y >= 0 && x < 104 && y < 104 && cost[x][y] < 100) {
-								int i_228_ = 0;
-								if (x < destX)
-									i_228_ = destX - x;
-								else if (x > destX + xLength - 1)
-									i_228_ = x - (destX + xLength - 1);
-								int i_229_ = 0;
-								if (y < destY)
-									i_229_ = destY - y;
-								else if (y > destY + yLength - 1)
-									i_229_ = y - (destY + yLength - 1);
-								final int i_230_ = i_228_ * i_228_ + i_229_ * i_229_;
-								if (i_230_ < i_223_ || i_230_ == i_223_ && cost[x][y] < thisCost) {
-									i_223_ = i_230_;
-									thisCost = cost[x][y];
-									curX = x;
-									curY = y;
-								}
-							}
-					if (i_223_ == 1000)
-						return;
-				} else {
+				end = search.closest(destX, destY, xLength, yLength);
+				if (end == -1) {
 					return;
 				}
-			tail = 0;
-			tileQueueX.set(tail, curX);
-			tileQueueY.set(tail++, curY);
-			int l5;
-			for (int j5 = l5 = via[curX][curY]; curX != gc.getPosition().getLocalX()
-					|| curY != gc.getPosition().getLocalY(); j5 = via[curX][curY]) {
-				if (j5 != l5) {
-					l5 = j5;
-					tileQueueX.set(tail, curX);
-					tileQueueY.set(tail++, curY);
+			}
+
+			final int waypoints = search.trace(end, startX, startY);
+			int length = 1;
+			int lastX = startX;
+			int lastY = startY;
+			for (int i = waypoints - 1; i >= 0; i--) {
+				final int waypoint = search.getWaypoint(i);
+				length += Math.max(Math.abs(PathSearch.tileX(waypoint) - lastX),
+						Math.abs(PathSearch.tileY(waypoint) - lastY));
+				lastX = PathSearch.tileX(waypoint);
+				lastY = PathSearch.tileY(waypoint);
+			}
+
+			// Expand the waypoints into every tile of the path, walking
+			// diagonally first just like the movement queue does.
+			final int[] steps = new int[length];
+			int count = 0;
+			int x = startX;
+			int y = startY;
+			steps[count++] = PathCache.step(baseX + x, baseY + y);
+			for (int i = waypoints - 1; i >= 0; i--) {
+				final int waypoint = search.getWaypoint(i);
+				final int wayX = PathSearch.tileX(waypoint);
+				final int wayY = PathSearch.tileY(waypoint);
+				while (x != wayX || y != wayY) {
+					x += Integer.signum(wayX - x);
+					y += Integer.signum(wayY - y);
+					steps[count++] = PathCache.step(baseX + x, baseY + y);
 				}
-				if ((j5 & 2) != 0)
-					curX++;
-				else if ((j5 & 8) != 0)
-					curX--;
-				if ((j5 & 1) != 0)
-					curY++;
-				else if ((j5 & 4) != 0)
-					curY--;
 			}
-			final int size = tail--;
-			int pathX = gc.getPosition().getRegionX() * 8 + tileQueueX.get(tail);
-			int pathY = gc.getPosition().getRegionY() * 8 + tileQueueY.get(tail);
-			gc.getMovementQueue().addFirstStep(new Position(pathX, pathY, gc.getPosition().getZ()));
-			for (int i = 1; i < size; i++) {
-				tail--;
-				pathX = gc.getPosition().getRegionX() * 8 + tileQueueX.get(tail);
-				pathY = gc.getPosition().getRegionY() * 8 + tileQueueY.get(tail);
-				gc.getMovementQueue().addStep(new Position(pathX, pathY, gc.getPosition().getZ()));
+
+			final PathCache.Path path = new PathCache.Path(steps, position.getZ());
+			if (!noclip) {
+				PathCache.put(key, path);
 			}
+			path.walk(gc, 0);
 		} catch (Exception e) {
 			System.out.println("Error finding route, destx: " + destX + ", destY: " + destY + ". Reseted queue.");
 			gc.getMovementQueue().setFollowCharacter(null);
@@ -12,6 +12,7 @@ import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.util.ResourceLeakDetector;
 import io.netty.util.ResourceLeakDetector.Level;
+import jaggrab.dispatch.OnDemandCache;
 import jaggrab.dispatch.RequestWorkerPool;
 import jaggrab.net.FileServerHandler;
 import jaggrab.net.JagGrabPipelineFactory;
@@ -61,8 +62,15 @@ public final class Jaggrab {
 	 *             if an error occurs.
 	 */
 	public void init() throws Exception {
-		logger.info("Starting workers...");
-		pool.start();
+		logger.info("Warming up the on-demand cache...");
+		OnDemandCache.warmUp();
+
+		if (NetworkConstants.ELASTIC_REQUEST_DISPATCH) {
+			logger.info("Requests will be serviced by the elastic request executor.");
+		} else {
+			logger.info("Starting workers...");
+			pool.start();
+		}
 
 		logger.info("Starting services...");
 		try {
@@ -22,6 +22,11 @@ public final class ChannelRequest<T> implements Comparable<ChannelRequest<T>> {
 	 */
 	private final T request;
 
+	/**
+	 * The time the request was created, in nanoseconds.
+	 */
+	private final long created = System.nanoTime();
+
 	/**
 	 * Creates a new channel request.
 	 * 
@@ -53,6 +58,15 @@ public final class ChannelRequest<T> implements Comparable<ChannelRequest<T>> {
 		return request;
 	}
 
+	/**
+	 * Gets the time the request was created.
+	 * 
+	 * @return The time, in nanoseconds.
+	 */
+	public long getCreated() {
+		return created;
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public int compareTo(ChannelRequest<T> o) {
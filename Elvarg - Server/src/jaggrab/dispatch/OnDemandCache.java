@@ -0,0 +1,325 @@
+package jaggrab.dispatch;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import com.elvarg.Elvarg;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import jaggrab.net.FileDescriptor;
+
+/**
+ * A cache of encoded 'on-demand' responses, so popular files are served
+ * straight from memory instead of being read and split into chunks for
+ * every client.
+ * <p>
+ * A response holds every chunk of a file, each with its header, ready to be
+ * written to a channel in one go. The cache is bounded by size and evicts
+ * the least recently used response. A file is only admitted once it has
+ * been requested more than once, so a single request for a rarely used file
+ * can't push out a popular one. Until then it is sent as a composite of
+ * slices of the mapped cache, without being copied.
+ * <p>
+ * The amount of requests for each file is saved on shutdown, and the most
+ * requested files are loaded before the file server starts accepting
+ * connections.
+ */
+public final class OnDemandCache {
+
+	/**
+	 * The logger for this class.
+	 */
+	private static final Logger logger = Logger.getLogger(OnDemandCache.class.getName());
+
+	/**
+	 * The maximum length of a chunk, in bytes.
+	 */
+	public static final int CHUNK_LENGTH = 500;
+
+	/**
+	 * The length of the header in front of every chunk.
+	 */
+	private static final int HEADER_LENGTH = 10;
+
+	/**
+	 * The maximum amount of bytes held by the cache.
+	 */
+	private static final long CAPACITY = 64 * 1024 * 1024;
+
+	/**
+	 * The maximum size of a single response held by the cache.
+	 */
+	private static final int MAXIMUM_ENTRY_SIZE = 2 * 1024 * 1024;
+
+	/**
+	 * The amount of requests for a file after which it is admitted.
+	 */
+	private static final int ADMISSION_THRESHOLD = 2;
+
+	/**
+	 * The part of the cache filled when warming up.
+	 */
+	private static final double WARM_UP_RATIO = 0.75;
+
+	/**
+	 * The file the request statistics are saved to.
+	 */
+	private static final Path STATISTICS = Paths.get("./data/ondemand.stats");
+
+	/**
+	 * The cached responses, keyed by file and least recently used first.
+	 */
+	private static final LinkedHashMap<Integer, ByteBuf> responses = new LinkedHashMap<>(1024, 0.75f, true);
+
+	/**
+	 * The amount of bytes held by the cached responses.
+	 */
+	private static long size;
+
+	/**
+	 * The amount of requests for each file.
+	 */
+	private static final Map<Integer, AtomicInteger> requests = new ConcurrentHashMap<>();
+
+	/**
+	 * The amount of requests served from the cache.
+	 */
+	private static final AtomicLong hits = new AtomicLong();
+
+	/**
+	 * The amount of requests read from the file system.
+	 */
+	private static final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Gets the encoded response for a file. The caller owns the returned
+	 * buffer, which is released once written to a channel.
+	 *
+	 * @param desc
+	 *            The file descriptor.
+	 * @return Every chunk of the file, ready to be written.
+	 * @throws IOException
+	 *             if an I/O error occurs.
+	 */
+	public static ByteBuf get(FileDescriptor desc) throws IOException {
+		int key = key(desc);
+		int count = requests.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+
+		synchronized (responses) {
+			ByteBuf cached = responses.get(key);
+			if (cached != null) {
+				hits.incrementAndGet();
+				return cached.retainedDuplicate();
+			}
+		}
+
+		misses.incrementAndGet();
+		ByteBuf encoded = encode(desc);
+		if (count < ADMISSION_THRESHOLD || encoded.readableBytes() > MAXIMUM_ENTRY_SIZE) {
+			return encoded;
+		}
+		return admit(key, encoded);
+	}
+
+	/**
+	 * Loads the most requested files of the previous run, according to the
+	 * saved statistics. Their counts are halved, so files which are no
+	 * longer popular age out over a few restarts.
+	 */
+	public static void warmUp() {
+		if (!Files.exists(STATISTICS)) {
+			return;
+		}
+		long start = System.currentTimeMillis();
+		List<int[]> entries = new ArrayList<>();
+		try {
+			for (String line : Files.readAllLines(STATISTICS, StandardCharsets.UTF_8)) {
+				String[] parts = line.trim().split(" ");
+				if (parts.length != 3) {
+					continue;
+				}
+				int key = key(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+				int count = Integer.parseInt(parts[2]) / 2;
+				if (count > 0) {
+					requests.put(key, new AtomicInteger(count));
+					entries.add(new int[] { key, count });
+				}
+			}
+		} catch (IOException | NumberFormatException e) {
+			logger.warning("Could not read " + STATISTICS + ": " + e);
+			return;
+		}
+
+		entries.sort((a, b) -> Integer.compare(b[1], a[1]));
+		int loaded = 0;
+		for (int[] entry : entries) {
+			if (entry[1] < ADMISSION_THRESHOLD || getSize() >= CAPACITY * WARM_UP_RATIO) {
+				break;
+			}
+			try {
+				ByteBuf encoded = encode(new FileDescriptor(entry[0] >>> 24, entry[0] & 0xFFFFFF));
+				if (encoded.readableBytes() > MAXIMUM_ENTRY_SIZE) {
+					encoded.release();
+					continue;
+				}
+				admit(entry[0], encoded).release();
+				loaded++;
+			} catch (Exception e) {
+				// The file no longer exists in this cache.
+			}
+		}
+		logger.info("Warmed up " + loaded + " on-demand files (" + getSize() / 1024 + " KB) in "
+				+ (System.currentTimeMillis() - start) + "ms.");
+	}
+
+	/**
+	 * Saves the amount of requests for each file, most requested first.
+	 */
+	public static void saveStatistics() {
+		if (requests.isEmpty()) {
+			return;
+		}
+		List<Map.Entry<Integer, AtomicInteger>> entries = new ArrayList<>(requests.entrySet());
+		entries.sort((a, b) -> Integer.compare(b.getValue().get(), a.getValue().get()));
+		Path temp = STATISTICS.resolveSibling(STATISTICS.getFileName() + ".tmp");
+		try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+			for (Map.Entry<Integer, AtomicInteger> entry : entries) {
+				int key = entry.getKey();
+				writer.write((key >>> 24) + " " + (key & 0xFFFFFF) + " " + entry.getValue().get());
+				writer.newLine();
+			}
+		} catch (IOException e) {
+			logger.warning("Could not write " + STATISTICS + ": " + e);
+			return;
+		}
+		try {
+			Files.move(temp, STATISTICS, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			logger.warning("Could not write " + STATISTICS + ": " + e);
+		}
+	}
+
+	/**
+	 * Gets the amount of bytes held by the cache.
+	 */
+	public static long getSize() {
+		synchronized (responses) {
+			return size;
+		}
+	}
+
+	/**
+	 * Describes the cache in a single line.
+	 */
+	public static String summary() {
+		int entries;
+		long bytes;
+		synchronized (responses) {
+			entries = responses.size();
+			bytes = size;
+		}
+		return "files=" + entries + " size=" + bytes / 1024 + "KB hits=" + hits.get() + " misses=" + misses.get();
+	}
+
+	/**
+	 * Adds an encoded response to the cache, copying it into a single buffer
+	 * and evicting the least recently used responses to make room.
+	 *
+	 * @param key
+	 *            The key of the file.
+	 * @param encoded
+	 *            The encoded response, which is released.
+	 * @return A retained duplicate of the cached response.
+	 */
+	private static ByteBuf admit(int key, ByteBuf encoded) {
+		ByteBuf copy = Unpooled.directBuffer(encoded.readableBytes()).writeBytes(encoded);
+		encoded.release();
+		synchronized (responses) {
+			ByteBuf existing = responses.get(key);
+			if (existing != null) {
+				// Another worker admitted it first.
+				copy.release();
+				return existing.retainedDuplicate();
+			}
+			responses.put(key, copy);
+			size += copy.readableBytes();
+			Iterator<ByteBuf> it = responses.values().iterator();
+			while (size > CAPACITY && it.hasNext()) {
+				ByteBuf eldest = it.next();
+				if (eldest == copy) {
+					break;
+				}
+				it.remove();
+				size -= eldest.readableBytes();
+				eldest.release();
+			}
+			return copy.retainedDuplicate();
+		}
+	}
+
+	/**
+	 * Encodes every chunk of a file. The chunk data are slices of the file
+	 * read from the cache, so nothing is copied.
+	 *
+	 * @param desc
+	 *            The file descriptor.
+	 * @return The encoded chunks.
+	 * @throws IOException
+	 *             if an I/O error occurs.
+	 */
+	private static ByteBuf encode(FileDescriptor desc) throws IOException {
+		ByteBuf file = Elvarg.getCache().getFile(desc);
+		int length = file.readableBytes();
+		int chunks = Math.max(1, (length + CHUNK_LENGTH - 1) / CHUNK_LENGTH);
+		CompositeByteBuf response = Unpooled.compositeBuffer(chunks * 2);
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			ByteBuf header = Unpooled.buffer(HEADER_LENGTH, HEADER_LENGTH);
+			header.writeByte(desc.getType() - 1);
+			header.writeMedium(desc.getFile());
+			header.writeInt(length);
+			header.writeShort(chunk);
+			response.addComponent(true, header);
+			response.addComponent(true, file.readRetainedSlice(Math.min(file.readableBytes(), CHUNK_LENGTH)));
+		}
+		file.release();
+		return response;
+	}
+
+	/**
+	 * Gets the key of a file.
+	 */
+	private static int key(FileDescriptor desc) {
+		return key(desc.getType(), desc.getFile());
+	}
+
+	/**
+	 * Gets the key of a file.
+	 */
+	private static int key(int type, int file) {
+		return type << 24 | file & 0xFFFFFF;
+	}
+
+	/**
+	 * Default private constructor to prevent instantiation.
+	 */
+	private OnDemandCache() {
+
+	}
+
+}
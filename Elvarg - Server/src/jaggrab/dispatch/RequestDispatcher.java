@@ -4,6 +4,8 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.PriorityBlockingQueue;
 
+import com.elvarg.net.NetworkConstants;
+
 import io.netty.channel.Channel;
 import io.netty.handler.codec.http.HttpRequest;
 import jaggrab.net.jaggrab.JagGrabRequest;
@@ -76,6 +78,10 @@ public final class RequestDispatcher {
 	 *            The request.
 	 */
 	public static void dispatch(Channel channel, OnDemandRequest request) {
+		if (NetworkConstants.ELASTIC_REQUEST_DISPATCH) {
+			RequestExecutor.ONDEMAND.submit(new ChannelRequest<OnDemandRequest>(channel, request));
+			return;
+		}
 		onDemandQueue.add(new ChannelRequest<OnDemandRequest>(channel, request));
 	}
 
@@ -88,6 +94,10 @@ public final class RequestDispatcher {
 	 *            The request.
 	 */
 	public static void dispatch(Channel channel, JagGrabRequest request) {
+		if (NetworkConstants.ELASTIC_REQUEST_DISPATCH) {
+			RequestExecutor.JAGGRAB.submit(new ChannelRequest<JagGrabRequest>(channel, request));
+			return;
+		}
 		jagGrabQueue.add(new ChannelRequest<JagGrabRequest>(channel, request));
 	}
 
@@ -100,6 +110,10 @@ public final class RequestDispatcher {
 	 *            The request.
 	 */
 	public static void dispatch(Channel channel, HttpRequest request) {
+		if (NetworkConstants.ELASTIC_REQUEST_DISPATCH) {
+			RequestExecutor.HTTP.submit(new ChannelRequest<HttpRequest>(channel, request));
+			return;
+		}
 		httpQueue.add(new ChannelRequest<HttpRequest>(channel, request));
 	}
 
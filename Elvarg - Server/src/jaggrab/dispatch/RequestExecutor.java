@@ -0,0 +1,99 @@
+package jaggrab.dispatch;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.elvarg.net.NetworkConstants;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.netty.handler.codec.http.HttpRequest;
+import jaggrab.net.jaggrab.JagGrabRequest;
+import jaggrab.net.ondemand.OnDemandRequest;
+
+/**
+ * Services file server requests on a shared, elastic pool of threads,
+ * instead of the fixed set of worker threads per request type started by
+ * the {@link RequestWorkerPool}.
+ * <p>
+ * Threads are only started while there are requests to service, and stop
+ * again once they have been idle for a while. Every request type has its
+ * own lane with a limit on how many of its requests are serviced at once,
+ * so a rush of 'on-demand' requests can't starve JAGGRAB and HTTP requests.
+ */
+public final class RequestExecutor {
+
+	/**
+	 * The time after which an idle thread stops, in seconds.
+	 */
+	private static final int IDLE_TIMEOUT = 30;
+
+	/**
+	 * The threads which service the requests.
+	 */
+	private static final ThreadPoolExecutor executor;
+
+	/**
+	 * The 'on-demand' requests, serviced in order of priority.
+	 */
+	static final RequestLane<OnDemandRequest> ONDEMAND;
+
+	/**
+	 * The JAGGRAB requests.
+	 */
+	static final RequestLane<JagGrabRequest> JAGGRAB;
+
+	/**
+	 * The HTTP requests.
+	 */
+	static final RequestLane<HttpRequest> HTTP;
+
+	static {
+		int threads = NetworkConstants.ONDEMAND_CONCURRENCY + NetworkConstants.JAGGRAB_CONCURRENCY
+				+ NetworkConstants.HTTP_CONCURRENCY;
+		executor = new ThreadPoolExecutor(threads, threads, IDLE_TIMEOUT, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(),
+				new ThreadFactoryBuilder().setNameFormat("FileServerThread-%d").setDaemon(true).build());
+		executor.allowCoreThreadTimeOut(true);
+
+		ONDEMAND = new RequestLane<>("ondemand", NetworkConstants.ONDEMAND_CONCURRENCY,
+				new PriorityBlockingQueue<>(), new OnDemandRequestWorker(), executor);
+		JAGGRAB = new RequestLane<>("jaggrab", NetworkConstants.JAGGRAB_CONCURRENCY, new LinkedBlockingQueue<>(),
+				new JagGrabRequestWorker(), executor);
+		HTTP = new RequestLane<>("http", NetworkConstants.HTTP_CONCURRENCY, new LinkedBlockingQueue<>(),
+				new HttpRequestWorker(), executor);
+	}
+
+	/**
+	 * Gets the amount of threads currently started.
+	 */
+	public static int getThreadCount() {
+		return executor.getPoolSize();
+	}
+
+	/**
+	 * Describes every lane, one per line.
+	 */
+	public static String[] summary() {
+		return new String[] { ONDEMAND.summary(), JAGGRAB.summary(), HTTP.summary(),
+				"threads: " + getThreadCount() + " cache: " + OnDemandCache.summary() };
+	}
+
+	/**
+	 * Clears the recorded statistics of every lane.
+	 */
+	public static void reset() {
+		ONDEMAND.reset();
+		JAGGRAB.reset();
+		HTTP.reset();
+	}
+
+	/**
+	 * Default private constructor to prevent instantiation.
+	 */
+	private RequestExecutor() {
+
+	}
+
+}
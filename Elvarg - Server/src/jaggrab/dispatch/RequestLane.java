@@ -0,0 +1,180 @@
+package jaggrab.dispatch;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.elvarg.util.LatencyHistogram;
+
+import io.netty.channel.Channel;
+
+/**
+ * The requests of a single type waiting to be serviced by the
+ * {@link RequestExecutor}, along with how many of them may be serviced at
+ * once.
+ * <p>
+ * A lane holds no threads of its own. Whenever a request is queued and the
+ * lane is below its limit, a task is started on the shared executor, which
+ * keeps servicing requests until the lane is empty.
+ *
+ * @param <T>
+ *            The type of request.
+ */
+final class RequestLane<T> {
+
+	/**
+	 * The name of the request type.
+	 */
+	private final String name;
+
+	/**
+	 * The maximum amount of requests serviced at once.
+	 */
+	private final int limit;
+
+	/**
+	 * The requests waiting to be serviced.
+	 */
+	private final Queue<ChannelRequest<T>> queue;
+
+	/**
+	 * The worker which services the requests. Its own loop is never run.
+	 */
+	private final RequestWorker<T> worker;
+
+	/**
+	 * The executor the lane's tasks run on.
+	 */
+	private final Executor executor;
+
+	/**
+	 * The amount of tasks servicing requests.
+	 */
+	private final AtomicInteger active = new AtomicInteger();
+
+	/**
+	 * The highest amount of requests which were waiting at once.
+	 */
+	private final AtomicInteger maximumDepth = new AtomicInteger();
+
+	/**
+	 * The amount of requests serviced.
+	 */
+	private final AtomicLong completed = new AtomicLong();
+
+	/**
+	 * The time requests spent waiting and being serviced.
+	 */
+	private final LatencyHistogram latencies = new LatencyHistogram();
+
+	/**
+	 * Creates a new request lane.
+	 *
+	 * @param name
+	 *            The name of the request type.
+	 * @param limit
+	 *            The maximum amount of requests serviced at once.
+	 * @param queue
+	 *            The queue the requests wait in.
+	 * @param worker
+	 *            The worker which services the requests.
+	 * @param executor
+	 *            The executor the lane's tasks run on.
+	 */
+	RequestLane(String name, int limit, Queue<ChannelRequest<T>> queue, RequestWorker<T> worker, Executor executor) {
+		this.name = name;
+		this.limit = limit;
+		this.queue = queue;
+		this.worker = worker;
+		this.executor = executor;
+	}
+
+	/**
+	 * Queues a request, and starts a task to service it if the lane is below
+	 * its limit.
+	 *
+	 * @param request
+	 *            The request.
+	 */
+	void submit(ChannelRequest<T> request) {
+		queue.add(request);
+		int depth = queue.size();
+		int maximum;
+		while (depth > (maximum = maximumDepth.get()) && !maximumDepth.compareAndSet(maximum, depth)) {
+			// Retry until the maximum is raised.
+		}
+		schedule();
+	}
+
+	/**
+	 * Starts a task if there are requests waiting and the lane is below its
+	 * limit.
+	 */
+	private void schedule() {
+		while (!queue.isEmpty()) {
+			int current = active.get();
+			if (current >= limit) {
+				return;
+			}
+			if (active.compareAndSet(current, current + 1)) {
+				executor.execute(this::drain);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Services requests until the lane is empty.
+	 */
+	private void drain() {
+		try {
+			ChannelRequest<T> request;
+			while ((request = queue.poll()) != null) {
+				Channel channel = request.getChannel();
+				try {
+					worker.service(channel, request.getRequest());
+				} catch (IOException e) {
+					e.printStackTrace();
+					channel.close();
+				} catch (RuntimeException e) {
+					e.printStackTrace();
+					channel.close();
+				} finally {
+					completed.incrementAndGet();
+					latencies.record(System.nanoTime() - request.getCreated());
+				}
+			}
+		} finally {
+			active.decrementAndGet();
+			// A request may have been queued after the last poll, but before
+			// this task stopped counting as active.
+			schedule();
+		}
+	}
+
+	/**
+	 * Gets the amount of requests waiting to be serviced.
+	 */
+	int getDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * Describes the lane in a single line.
+	 */
+	String summary() {
+		return name + ": queued=" + queue.size() + " max=" + maximumDepth.get() + " active=" + active.get() + "/"
+				+ limit + " done=" + completed.get() + " latency " + latencies.summary();
+	}
+
+	/**
+	 * Clears the recorded statistics.
+	 */
+	void reset() {
+		maximumDepth.set(0);
+		completed.set(0);
+		latencies.reset();
+	}
+}
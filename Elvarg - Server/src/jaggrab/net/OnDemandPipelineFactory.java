@@ -7,7 +7,6 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.timeout.IdleStateHandler;
 import jaggrab.net.ondemand.OnDemandRequestDecoder;
-import jaggrab.net.ondemand.OnDemandResponseEncoder;
 import jaggrab.net.service.ServiceRequestDecoder;
 import jaggrab.net.service.ServiceResponseEncoder;
 
@@ -45,7 +44,6 @@ public final class OnDemandPipelineFactory extends ChannelInitializer<SocketChan
 
 		// encoders
 		pipeline.addLast("serviceEncoder", new ServiceResponseEncoder());
-		pipeline.addLast("encoder", new OnDemandResponseEncoder());
 
 		// handler
 		pipeline.addLast("timeout", new IdleStateHandler(NetworkConstants.SESSION_TIMEOUT, 0, 0));